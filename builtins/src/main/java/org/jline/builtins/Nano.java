@@ -49,6 +49,7 @@ import org.jline.terminal.Size;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.Terminal.Signal;
 import org.jline.terminal.Terminal.SignalHandler;
+import org.jline.terminal.impl.MouseSupport;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
@@ -976,7 +977,7 @@ public class Nano {
         terminal.puts(Capability.enter_ca_mode);
         terminal.puts(Capability.keypad_xmit);
         if (mouseSupport) {
-            terminal.trackMouse(Terminal.MouseTracking.Normal);
+            terminal.trackMouse(Terminal.MouseTracking.Normal, true);
         }
 
         this.shortcuts = standardShortcuts();
@@ -1146,7 +1147,7 @@ public class Nano {
         writeKeyMap.bind(Operation.ACCEPT, "\r");
         writeKeyMap.bind(Operation.CANCEL, ctrl('C'));
         writeKeyMap.bind(Operation.HELP, ctrl('G'), key(terminal, Capability.key_f1));
-        writeKeyMap.bind(Operation.MOUSE_EVENT, key(terminal, Capability.key_mouse));
+        writeKeyMap.bind(Operation.MOUSE_EVENT, MouseSupport.keys(terminal));
 
         editMessage = getWriteMessage();
         editBuffer.setLength(0);
@@ -1342,7 +1343,7 @@ public class Nano {
         readKeyMap.bind(Operation.ACCEPT, "\r");
         readKeyMap.bind(Operation.CANCEL, ctrl('C'));
         readKeyMap.bind(Operation.HELP, ctrl('G'), key(terminal, Capability.key_f1));
-        readKeyMap.bind(Operation.MOUSE_EVENT, key(terminal, Capability.key_mouse));
+        readKeyMap.bind(Operation.MOUSE_EVENT, MouseSupport.keys(terminal));
 
         editMessage = getReadMessage();
         editBuffer.setLength(0);
@@ -1562,7 +1563,7 @@ public class Nano {
         searchKeyMap.bind(Operation.CANCEL, ctrl('C'));
         searchKeyMap.bind(Operation.FIRST_LINE, ctrl('Y'));
         searchKeyMap.bind(Operation.LAST_LINE, ctrl('V'));
-        searchKeyMap.bind(Operation.MOUSE_EVENT, key(terminal, Capability.key_mouse));
+        searchKeyMap.bind(Operation.MOUSE_EVENT, MouseSupport.keys(terminal));
 
         editMessage = getSearchMessage();
         editBuffer.setLength(0);
@@ -1763,7 +1764,7 @@ public class Nano {
     void mouseSupport() throws IOException {
         mouseSupport = !mouseSupport;
         setMessage("Mouse support " + (mouseSupport ? "enabled" : "disabled"));
-        terminal.trackMouse(mouseSupport ? Terminal.MouseTracking.Normal : Terminal.MouseTracking.Off);
+        terminal.trackMouse(mouseSupport ? Terminal.MouseTracking.Normal : Terminal.MouseTracking.Off, true);
     }
 
     void constantCursor() {
@@ -1787,7 +1788,10 @@ public class Nano {
     }
 
     void mouseEvent() {
-        MouseEvent event = terminal.readMouseEvent();
+        MouseEvent event = terminal.readMouseEvent(bindingReader::readCharacter, bindingReader.getLastBinding());
+        event = MouseSupport.coalesce(event,
+                () -> bindingReader.available() > 0 ? bindingReader.readCharacter() : -1,
+                bindingReader::unread);
         if (event.getModifiers().isEmpty() && event.getType() == MouseEvent.Type.Released
                 && event.getButton() == MouseEvent.Button.Button1) {
             int x = event.getX();
@@ -2028,7 +2032,7 @@ public class Nano {
         keys.bind(Operation.RIGHT, key(terminal, Capability.key_right));
         keys.bind(Operation.LEFT, key(terminal, Capability.key_left));
 
-        keys.bind(Operation.MOUSE_EVENT, key(terminal, Capability.key_mouse));
+        keys.bind(Operation.MOUSE_EVENT, MouseSupport.keys(terminal));
     }
 
     protected enum Operation {
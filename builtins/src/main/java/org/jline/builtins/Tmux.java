@@ -50,6 +50,7 @@ import org.jline.terminal.Terminal;
 import org.jline.terminal.Terminal.Signal;
 import org.jline.terminal.Terminal.SignalHandler;
 import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.jline.terminal.impl.MouseSupport;
 import org.jline.utils.*;
 import org.jline.utils.InfoCmp.Capability;
 
@@ -230,7 +231,7 @@ public class Tmux {
         for (int i = 0; i < 255; i++) {
             keyMap.bind(Binding.Discard, prefix + (char)(i));
         }
-        keyMap.bind(Binding.Mouse, key(terminal, Capability.key_mouse));
+        keyMap.bind(Binding.Mouse, MouseSupport.keys(terminal));
         return keyMap;
     }
 
@@ -241,7 +242,7 @@ public class Tmux {
         Attributes attributes = terminal.enterRawMode();
         terminal.puts(Capability.enter_ca_mode);
         terminal.puts(Capability.keypad_xmit);
-        terminal.trackMouse(Terminal.MouseTracking.Any);
+        terminal.trackMouse(Terminal.MouseTracking.Any, true);
         terminal.flush();
         executor = Executors.newSingleThreadScheduledExecutor();
         try {
@@ -331,7 +332,10 @@ public class Tmux {
                         first = true;
                     }
                     if (b == Binding.Mouse) {
-                        MouseEvent event = terminal.readMouseEvent();
+                        MouseEvent event = terminal.readMouseEvent(reader::readCharacter, reader.getLastBinding());
+                        event = MouseSupport.coalesce(event,
+                                () -> reader.available() > 0 ? reader.readCharacter() : -1,
+                                reader::unread);
                         //System.err.println(event.toString());
                     } else if (b instanceof String || b instanceof String[]) {
                         ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -1674,6 +1678,11 @@ public class Tmux {
                 public void write(int b) throws IOException {
                     console.processInputByte(b);
                 }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    console.processInputBytes(b, off, len);
+                }
             };
             this.console = new LineDisciplineTerminal(
                     name,
@@ -11,7 +11,9 @@ package org.jline.keymap;
 import java.io.IOError;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.concurrent.TimeUnit;
 
 import org.jline.reader.EndOfFileException;
 import org.jline.utils.ClosedException;
@@ -25,15 +27,88 @@ import org.jline.utils.NonBlockingReader;
  */
 public class BindingReader {
 
+    public static final long DEFAULT_MIN_AMBIGUOUS_TIMEOUT = 10L;
+
+    /** Number of gaps kept to compute the adaptive timeout */
+    private static final int GAPS = 32;
+    /** Number of gaps needed before the adaptive timeout is used */
+    private static final int MIN_GAPS = 8;
+
     protected final NonBlockingReader reader;
     protected final StringBuilder opBuffer = new StringBuilder();
     protected final Deque<Integer> pushBackChar = new ArrayDeque<>();
     protected String lastBinding;
+    protected long bindingStart;
+
+    private boolean adaptiveTimeout;
+    private long minAmbiguousTimeout = DEFAULT_MIN_AMBIGUOUS_TIMEOUT;
+    /** The last gaps between the characters of escape sequences, in nanoseconds */
+    private final long[] gaps = new long[GAPS];
+    private int nbGaps;
+    /** The gaps between the characters of the binding being read */
+    private final long[] pendingGaps = new long[GAPS];
+    private int nbPendingGaps;
+    private long lastRead;
+    /** Whether the last binding is an escape returned because the timeout elapsed */
+    private boolean escapeTimedOut;
 
     public BindingReader(NonBlockingReader reader) {
         this.reader = reader;
     }
 
+    /**
+     * Enables the adaptive timeout for ambiguous key sequences.  The delays
+     * between the characters of the escape sequences sent by the terminal are
+     * measured, and the timeout is set to twice the 95th percentile of the
+     * last ones, between the {@link #getMinAmbiguousTimeout()} and the
+     * {@link KeyMap#getAmbiguousTimeout()}, which is used until enough escape
+     * sequences have been read.  Only the bound sequences of at least three
+     * characters are measured, so that an escape key followed by another key
+     * does not count.
+     * <p>
+     * When an escape has been returned because the timeout elapsed, and the
+     * next character arrives before the {@link KeyMap#getAmbiguousTimeout()}
+     * and continues a bound sequence, the sequence has been split because
+     * the delays grew.  The measured delays are then discarded, so that
+     * the timeout goes back to the maximum and adapts to the new delays.
+     *
+     * @param adaptiveTimeout whether the timeout is adaptive
+     */
+    public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    public void setMinAmbiguousTimeout(long minAmbiguousTimeout) {
+        this.minAmbiguousTimeout = minAmbiguousTimeout;
+    }
+
+    public long getMinAmbiguousTimeout() {
+        return minAmbiguousTimeout;
+    }
+
+    /**
+     * Returns the time to wait for the next character of an ambiguous key sequence.
+     *
+     * @param keys the KeyMap in use
+     * @return the timeout in milliseconds
+     */
+    public long getAmbiguousTimeout(KeyMap<?> keys) {
+        long max = keys.getAmbiguousTimeout();
+        int nb = Math.min(nbGaps, GAPS);
+        if (!adaptiveTimeout || max <= 0 || nb < MIN_GAPS) {
+            return max;
+        }
+        long[] sorted = Arrays.copyOf(gaps, nb);
+        Arrays.sort(sorted);
+        long gap = sorted[(nb * 95 + 99) / 100 - 1];
+        long timeout = TimeUnit.NANOSECONDS.toMillis(2 * gap + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        return Math.max(Math.min(timeout, max), Math.min(minAmbiguousTimeout, max));
+    }
+
     /**
      * Read from the input stream and decode an operation from the key map.
      *
@@ -63,6 +138,7 @@ public class BindingReader {
 
     public <T> T readBinding(KeyMap<T> keys, KeyMap<T> local, boolean block) {
         lastBinding = null;
+        bindingStart = System.nanoTime();
         T o = null;
         int[] remaining = new int[1];
         boolean hasRead = false;
@@ -80,7 +156,7 @@ public class BindingReader {
                     opBuffer.setLength(opBuffer.length() - remaining[0]);
                 }
                 else {
-                    long ambiguousTimeout = keys.getAmbiguousTimeout();
+                    long ambiguousTimeout = getAmbiguousTimeout(keys);
                     if (ambiguousTimeout > 0 && peekCharacter(ambiguousTimeout) != NonBlockingReader.READ_EXPIRED) {
                         o = null;
                     }
@@ -88,6 +164,16 @@ public class BindingReader {
                 if (o != null) {
                     lastBinding = opBuffer.toString();
                     opBuffer.setLength(0);
+                    escapeTimedOut = adaptiveTimeout && remaining[0] < 0 && "\033".equals(lastBinding);
+                    if (lastBinding.length() >= 3 && lastBinding.charAt(0) == '\033') {
+                        for (int i = 0; i < nbPendingGaps; i++) {
+                            gaps[nbGaps++ % GAPS] = pendingGaps[i];
+                        }
+                        if (nbGaps >= 2 * GAPS) {
+                            nbGaps -= GAPS;
+                        }
+                    }
+                    nbPendingGaps = 0;
                     return o;
                 }
                 // We don't match anything
@@ -100,6 +186,7 @@ public class BindingReader {
                 opBuffer.setLength(0);
                 opBuffer.append(rem);
                 if (o != null) {
+                    escapeTimedOut = false;
                     return o;
                 }
             }
@@ -107,16 +194,46 @@ public class BindingReader {
             if (!block && hasRead) {
                 break;
             }
+            boolean pushedBack = !pushBackChar.isEmpty();
             int c = readCharacter();
             if (c == -1) {
                 return null;
             }
+            long now = System.nanoTime();
+            if (opBuffer.length() == 0) {
+                if (escapeTimedOut && !pushedBack) {
+                    checkSplitSequence(keys, c, now - lastRead);
+                }
+                escapeTimedOut = false;
+                bindingStart = now;
+                nbPendingGaps = 0;
+            } else if (!pushedBack && nbPendingGaps < GAPS) {
+                pendingGaps[nbPendingGaps++] = now - lastRead;
+            }
+            lastRead = now;
             opBuffer.appendCodePoint(c);
             hasRead = true;
         }
         return null;
     }
 
+    /**
+     * Checks if the character read after an escape returned because the timeout
+     * elapsed continues a bound sequence, in which case the measured delays are
+     * too short and are replaced by the delay of that character.
+     */
+    private void checkSplitSequence(KeyMap<?> keys, int c, long gap) {
+        if (gap > TimeUnit.MILLISECONDS.toNanos(keys.getAmbiguousTimeout())) {
+            return;
+        }
+        int[] remaining = new int[1];
+        keys.getBound(new StringBuilder().append('\033').appendCodePoint(c), remaining);
+        if (remaining[0] < 0) {
+            nbGaps = 0;
+            gaps[nbGaps++] = gap;
+        }
+    }
+
     /**
      * Read a codepoint from the terminal.
      *
@@ -155,6 +272,29 @@ public class BindingReader {
         }
     }
 
+    /**
+     * Returns the number of characters which can be read without blocking,
+     * including the pushed back ones.
+     *
+     * @return the number of immediately available characters
+     */
+    public int available() {
+        return pushBackChar.size() + reader.available();
+    }
+
+    /**
+     * Pushes back the given characters in front of the input,
+     * so that they are the next ones to be read.
+     *
+     * @param chars the characters to push back
+     */
+    public void unread(CharSequence chars) {
+        int[] cps = chars.codePoints().toArray();
+        for (int i = cps.length - 1; i >= 0; i--) {
+            pushBackChar.addFirst(cps[i]);
+        }
+    }
+
     public void runMacro(String macro) {
         macro.codePoints().forEachOrdered(pushBackChar::addLast);
     }
@@ -167,4 +307,14 @@ public class BindingReader {
         return lastBinding;
     }
 
+    /**
+     * The {@link System#nanoTime()} at which the first character
+     * of the last binding has been read.
+     *
+     * @return the start time of the last binding
+     */
+    public long getLastBindingStart() {
+        return bindingStart;
+    }
+
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader;
+
+import java.util.Collection;
+
+/**
+ * Receives the candidates found by a {@link StreamingCompleter}.
+ *
+ * The sink may be used from any thread.  Once the completion has been
+ * cancelled, because the user pressed a key or the completion timed out,
+ * the added candidates are ignored and the completer should return as
+ * soon as possible.
+ */
+public interface CandidateSink {
+
+    /**
+     * Adds a candidate.
+     *
+     * @param candidate the candidate
+     */
+    void add(Candidate candidate);
+
+    /**
+     * Adds several candidates at once.
+     *
+     * @param candidates the candidates
+     */
+    default void addAll(Collection<Candidate> candidates) {
+        candidates.forEach(this::add);
+    }
+
+    /**
+     * Signals that some candidates are missing, for example because
+     * some completers did not finish in time.
+     */
+    default void setPartial() {
+    }
+
+    /**
+     * Checks whether the completion has been cancelled.
+     *
+     * @return <code>true</code> if the completer should stop
+     */
+    boolean isCancelled();
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader;
+
+import org.jline.utils.AttributedString;
+
+/**
+ * A highlighter which can update the result of a previous highlighting
+ * after the buffer has been edited, restyling only the affected part.
+ *
+ * The line reader does not highlight the buffer again when neither its text,
+ * nor the search term and the active region have changed.  When only the text
+ * has changed, the previous result is given to this highlighter along with the
+ * edited range, otherwise the whole buffer is highlighted.
+ *
+ * @see org.jline.reader.impl.LineHighlighter
+ */
+public interface IncrementalHighlighter extends Highlighter {
+
+    /**
+     * Highlights the buffer, which has been edited since the previous buffer
+     * was highlighted.  The two buffers are equal before <code>start</code>,
+     * and the new buffer from <code>end</code> is equal to the previous one
+     * from <code>previousEnd</code>.
+     *
+     * @param reader the line reader
+     * @param buffer the buffer to highlight
+     * @param previousBuffer the buffer highlighted previously
+     * @param previous the previous result
+     * @param start the start of the edited range
+     * @param previousEnd the end of the replaced range in the previous buffer
+     * @param end the end of the edited range in the new buffer
+     * @return the highlighted buffer
+     */
+    AttributedString highlight(LineReader reader, String buffer,
+                               String previousBuffer, AttributedString previous,
+                               int start, int previousEnd, int end);
+
+}
@@ -145,6 +145,7 @@ public interface LineReader {
     String FORWARD_WORD = "forward-word";
     String HISTORY_BEGINNING_SEARCH_BACKWARD = "history-beginning-search-backward";
     String HISTORY_BEGINNING_SEARCH_FORWARD = "history-beginning-search-forward";
+    String HISTORY_FUZZY_SEARCH = "history-fuzzy-search";
     String HISTORY_INCREMENTAL_PATTERN_SEARCH_BACKWARD = "history-incremental-pattern-search-backward";
     String HISTORY_INCREMENTAL_PATTERN_SEARCH_FORWARD = "history-incremental-pattern-search-forward";
     String HISTORY_INCREMENTAL_SEARCH_BACKWARD = "history-incremental-search-backward";
@@ -331,6 +332,21 @@ public interface LineReader {
      */
     String AMBIGUOUS_BINDING = "ambiguous-binding";
 
+    /**
+     * Minimum timeout for ambiguous key sequences, in milliseconds,
+     * when the {@link Option#ADAPTIVE_AMBIGUOUS_BINDING} option is set.
+     */
+    String AMBIGUOUS_BINDING_MIN = "ambiguous-binding-min";
+
+    /**
+     * Time in milliseconds after which an asynchronous completion is
+     * cancelled, the candidates found until then being used.  The
+     * completion is only cancelled by a key press if <code>0</code>.
+     *
+     * @see StreamingCompleter
+     */
+    String COMPLETION_TIMEOUT = "completion-timeout";
+
     /**
      * Columns separated list of patterns that will not be saved in history.
      */
@@ -346,11 +362,25 @@ public interface LineReader {
      */
     String HISTORY_SIZE = "history-size";
 
+    /**
+     * Maximum memory, in bytes, used by the undo history of the line
+     * being edited.  The oldest changes can not be undone anymore once
+     * it is exceeded.
+     */
+    String UNDO_MEMORY = "undo-memory";
+
     /**
      * Number of history items to keep in the history file.
      */
     String HISTORY_FILE_SIZE = "history-file-size";
 
+    /**
+     * When the entries saved incrementally are forced to disk: <code>never</code>,
+     * when the history is saved (<code>close</code>, the default), or after each
+     * write (<code>commit</code>).
+     */
+    String HISTORY_SYNC = "history-sync";
+
     Map<String, KeyMap<Binding>> defaultKeyMaps();
 
     enum Option {
@@ -363,6 +393,19 @@ public interface LineReader {
         HISTORY_BEEP(true),
         HISTORY_INCREMENTAL(true),
         HISTORY_TIMESTAMPED(true),
+        /**
+         * Only decode the entries of the history file when they are
+         * accessed.  Loading only reads and indexes the last
+         * {@link #HISTORY_SIZE} lines of the file, so that the startup time
+         * does not depend on the history file size.
+         */
+        HISTORY_LAZY_LOAD,
+        /**
+         * Share the history file between several processes.  Appends are done while
+         * holding a file lock, new entries written by other processes are read before
+         * navigating the history, and the history file is compacted in the background.
+         */
+        HISTORY_SHARED,
         /** when displaying candidates, group them by {@link Candidate#group()} */
         AUTO_GROUP(true),
         AUTO_MENU(true),
@@ -412,6 +455,26 @@ public interface LineReader {
 
         /** if history search is fully case insensitive */
         CASE_INSENSITIVE_SEARCH,
+
+        /**
+         * Measure the latency between reading a key binding and the display update,
+         * see {@link org.jline.reader.impl.LineReaderImpl#getLatencyProfiler()}.
+         */
+        PROFILE_LATENCY,
+
+        /**
+         * Run all the completers in the background like a {@link StreamingCompleter},
+         * so that the completion can be interrupted by pressing a key.
+         */
+        ASYNC_COMPLETION,
+
+        /**
+         * Adapt the timeout for ambiguous key sequences to the delays measured
+         * between the characters of the escape sequences sent by the terminal,
+         * the {@link #AMBIGUOUS_BINDING} timeout being the maximum, see
+         * {@link org.jline.keymap.BindingReader#setAdaptiveTimeout(boolean)}.
+         */
+        ADAPTIVE_AMBIGUOUS_BINDING,
         ;
 
         private final boolean def;
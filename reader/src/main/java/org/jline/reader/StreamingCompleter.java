@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A completer pushing its candidates to a {@link CandidateSink} as they are found.
+ *
+ * The line reader runs such completers in the background, displaying the
+ * candidates found so far, and cancels them when a key is pressed or when
+ * the {@link LineReader#COMPLETION_TIMEOUT} elapses.  Other completers are
+ * run the same way when the {@link LineReader.Option#ASYNC_COMPLETION}
+ * option is set.
+ *
+ * Streaming completers can still be used as synchronous completers, for
+ * example in an {@link org.jline.reader.impl.completer.AggregateCompleter}.
+ */
+@FunctionalInterface
+public interface StreamingCompleter extends Completer {
+
+    /**
+     * Pushes the possible completions for the <i>command line</i> to the sink.
+     * This method is usually not called from the thread reading the line, and
+     * it should return early when the sink is cancelled.
+     *
+     * @param reader        The line reader
+     * @param line          The parsed command line
+     * @param sink          The sink receiving the candidates
+     * @see Completer#complete(LineReader, ParsedLine, List)
+     */
+    void complete(LineReader reader, ParsedLine line, CandidateSink sink);
+
+    @Override
+    default void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        complete(reader, line, new CandidateSink() {
+            @Override
+            public void add(Candidate candidate) {
+                candidates.add(candidate);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Adapts a synchronous completer, whose candidates are all pushed
+     * to the sink when it returns.
+     *
+     * @param completer the completer
+     * @return the streaming completer
+     */
+    static StreamingCompleter of(Completer completer) {
+        if (completer instanceof StreamingCompleter) {
+            return (StreamingCompleter) completer;
+        }
+        return (reader, line, sink) -> {
+            List<Candidate> candidates = new ArrayList<>();
+            completer.complete(reader, line, candidates);
+            sink.addAll(candidates);
+        };
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import org.jline.reader.Buffer;
+
+/**
+ * Computes the difference between two buffers as a single edit: the code
+ * points removed and inserted at a given position, and the cursors.
+ */
+class BufferDiffer implements UndoTree.Differ<Buffer> {
+
+    @Override
+    public UndoTree.Diff<Buffer> diff(Buffer from, Buffer to) {
+        int fl = from.length();
+        int tl = to.length();
+        int max = Math.min(fl, tl);
+        int start = 0;
+        while (start < max && from.atChar(start) == to.atChar(start)) {
+            start++;
+        }
+        int end = 0;
+        while (end < max - start && from.atChar(fl - 1 - end) == to.atChar(tl - 1 - end)) {
+            end++;
+        }
+        return new Edit(start, codePoints(from, start, fl - end), codePoints(to, start, tl - end),
+                from.cursor(), to.cursor());
+    }
+
+    private static String codePoints(Buffer buffer, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.appendCodePoint(buffer.atChar(i));
+        }
+        return sb.toString();
+    }
+
+    private static class Edit implements UndoTree.Diff<Buffer> {
+        private final int position;
+        private final String removed;
+        private final String inserted;
+        private final int cursorBefore;
+        private final int cursorAfter;
+
+        Edit(int position, String removed, String inserted, int cursorBefore, int cursorAfter) {
+            this.position = position;
+            this.removed = removed;
+            this.inserted = inserted;
+            this.cursorBefore = cursorBefore;
+            this.cursorAfter = cursorAfter;
+        }
+
+        @Override
+        public Buffer apply(Buffer from) {
+            return edit(from, removed, inserted, cursorAfter);
+        }
+
+        @Override
+        public Buffer revert(Buffer to) {
+            return edit(to, inserted, removed, cursorBefore);
+        }
+
+        private Buffer edit(Buffer state, String remove, String insert, int cursor) {
+            Buffer buffer = state.copy();
+            buffer.cursor(position);
+            buffer.delete(remove.codePointCount(0, remove.length()));
+            buffer.write(insert);
+            buffer.cursor(cursor);
+            return buffer;
+        }
+
+        @Override
+        public long size() {
+            return 2L * (removed.length() + inserted.length()) + 64;
+        }
+    }
+
+}
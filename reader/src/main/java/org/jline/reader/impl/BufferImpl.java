@@ -14,6 +14,10 @@ import org.jline.reader.Buffer;
 
 /**
  * A holder for a {@link StringBuilder} that also contains the current cursor position.
+ * <p>
+ * The strings returned by {@link #toString()} and {@link #upToCursor()} are kept
+ * until the buffer is modified, and the copies share the code points with the
+ * original buffer until one of them is modified.
  *
  * @author <a href="mailto:mwp1@cornell.edu">Marc Prud'hommeaux</a>
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
@@ -26,6 +30,15 @@ public class BufferImpl implements Buffer
     private int[] buffer;
     private int g0;
     private int g1;
+    /** Whether the code points are shared with a copy, and must be cloned before being modified */
+    private boolean shared;
+    /** Incremented each time the content is modified */
+    private int modCount;
+    private String string;
+    private int stringModCount = -1;
+    private String upToCursor;
+    private int upToCursorModCount = -1;
+    private int upToCursorPos = -1;
 
     public BufferImpl() {
         this(64);
@@ -40,9 +53,13 @@ public class BufferImpl implements Buffer
     private BufferImpl(BufferImpl buffer) {
         this.cursor = buffer.cursor;
         this.cursorCol = buffer.cursorCol;
-        this.buffer = buffer.buffer.clone();
+        this.buffer = buffer.buffer;
         this.g0 = buffer.g0;
         this.g1 = buffer.g1;
+        this.shared = true;
+        buffer.shared = true;
+        this.string = buffer.string;
+        this.stringModCount = buffer.stringModCount == buffer.modCount ? 0 : -1;
     }
 
     public BufferImpl copy () {
@@ -61,7 +78,10 @@ public class BufferImpl implements Buffer
         if (cursor == length()) {
             return false;
         } else {
-            buffer[adjust(cursor)] = ch;
+            if (atChar(cursor) != ch) {
+                modifying();
+                buffer[adjust(cursor)] = ch;
+            }
             return true;
         }
     }
@@ -141,6 +161,11 @@ public class BufferImpl implements Buffer
     }
 
     private void write(int[] ucps) {
+        if (ucps.length == 0) {
+            cursorCol = -1;
+            return;
+        }
+        modifying();
         moveGapToCursor();
         int len = length() + ucps.length;
         int sz = buffer.length;
@@ -164,6 +189,7 @@ public class BufferImpl implements Buffer
         if (length() == 0) {
             return false;
         }
+        modCount++;
         g0 = 0;
         g1 = buffer.length;
         cursor = 0;
@@ -181,17 +207,23 @@ public class BufferImpl implements Buffer
         }
         if (end <= g0) {
             return new String(buffer, start, end - start);
-        } else if (start > g0) {
+        } else if (start >= g0) {
             return new String(buffer, g1 - g0 + start, end - start);
         } else {
-            int[] b = buffer.clone();
-            System.arraycopy(b, g1, b, g0, b.length - g1);
-            return new String(b, start, end - start);
+            int[] b = new int[end - start];
+            System.arraycopy(buffer, start, b, 0, g0 - start);
+            System.arraycopy(buffer, g1, b, g0 - start, end - g0);
+            return new String(b, 0, b.length);
         }
     }
 
     public String upToCursor() {
-        return substring(0, cursor);
+        if (upToCursorModCount != modCount || upToCursorPos != cursor) {
+            upToCursor = cursor == length() ? toString() : substring(0, cursor);
+            upToCursorModCount = modCount;
+            upToCursorPos = cursor;
+        }
+        return upToCursor;
     }
 
     /**
@@ -311,6 +343,11 @@ public class BufferImpl implements Buffer
      */
     public int backspace(final int num) {
         int count = Math.max(Math.min(cursor, num), 0);
+        if (count == 0) {
+            cursorCol = -1;
+            return 0;
+        }
+        modifying();
         moveGapToCursor();
         cursor -= count;
         g0 -= count;
@@ -329,6 +366,11 @@ public class BufferImpl implements Buffer
 
     public int delete(int num) {
         int count = Math.max(Math.min(length() - cursor, num), 0);
+        if (count == 0) {
+            cursorCol = -1;
+            return 0;
+        }
+        modifying();
         moveGapToCursor();
         g1 += count;
         cursorCol = -1;
@@ -341,7 +383,11 @@ public class BufferImpl implements Buffer
 
     @Override
     public String toString() {
-        return substring(0, length());
+        if (stringModCount != modCount) {
+            string = substring(0, length());
+            stringModCount = modCount;
+        }
+        return string;
     }
 
     public void copyFrom(Buffer buf) {
@@ -351,9 +397,28 @@ public class BufferImpl implements Buffer
         BufferImpl that = (BufferImpl) buf;
         this.g0 = that.g0;
         this.g1 = that.g1;
-        this.buffer = that.buffer.clone();
+        this.buffer = that.buffer;
+        this.shared = true;
+        that.shared = true;
         this.cursor = that.cursor;
         this.cursorCol = that.cursorCol;
+        this.modCount++;
+        if (that.stringModCount == that.modCount) {
+            this.string = that.string;
+            this.stringModCount = this.modCount;
+        }
+    }
+
+    /**
+     * Called before the content is modified: invalidates the strings,
+     * and clones the code points if they are shared with a copy.
+     */
+    private void modifying() {
+        modCount++;
+        if (shared) {
+            buffer = buffer.clone();
+            shared = false;
+        }
     }
 
     private void moveGapToCursor() {
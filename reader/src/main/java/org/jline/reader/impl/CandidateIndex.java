@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.jline.reader.Candidate;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Levenshtein;
+
+/**
+ * Index of the completion candidates, grouped by their value stripped of
+ * ansi sequences.
+ *
+ * The keys are sorted by their case folded form, so that the keys starting
+ * with a given prefix are found with a binary search, and their lower case
+ * form is computed once when the index is built.  The index is meant to be
+ * kept while the completer returns the same candidates, so that repeated
+ * completions on a large set of candidates do not group and fold them
+ * again.  Large sets are indexed and filtered in parallel.
+ *
+ * Approximate matching walks the sorted keys as a trie, computing the rows
+ * of the edit distance table for each character of the keys, so that the
+ * rows of a common prefix are only computed once, and stopping as soon as
+ * the distance exceeds the maximum number of errors.
+ *
+ * The returned maps and their lists must not be modified.
+ */
+final class CandidateIndex {
+
+    static final int PARALLEL_THRESHOLD = 8192;
+
+    /** The number of keys under which the keys are compared one by one */
+    static final int WALK_THRESHOLD = 256;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final Comparator<Key> ORDER = Comparator
+            .comparing((Key k) -> k.folded)
+            .thenComparing(k -> k.key);
+
+    private static final class Key {
+        final String key;
+        final String lower;
+        final String folded;
+        final List<Candidate> candidates;
+
+        Key(String key, List<Candidate> candidates) {
+            String folded = fold(key);
+            String lower = key.toLowerCase();
+            this.key = key;
+            this.lower = lower.equals(folded) ? folded : lower;
+            this.folded = folded;
+            this.candidates = candidates;
+        }
+    }
+
+    private final Candidate[] source;
+    private final Key[] keys;
+
+    private CandidateIndex(Candidate[] source, Key[] keys) {
+        this.source = source;
+        this.keys = keys;
+    }
+
+    /**
+     * Indexes the given candidates.
+     *
+     * @param candidates the candidates
+     * @return the index
+     */
+    static CandidateIndex build(List<Candidate> candidates) {
+        Candidate[] source = candidates.toArray(new Candidate[0]);
+        String[] stripped = new String[source.length];
+        IntStream range = IntStream.range(0, source.length);
+        if (source.length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(i -> stripped[i] = AttributedString.fromAnsi(source[i].value()).toString());
+        Map<String, List<Candidate>> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < source.length; i++) {
+            grouped.computeIfAbsent(stripped[i], s -> new ArrayList<>()).add(source[i]);
+        }
+        Key[] keys = new Key[grouped.size()];
+        int n = 0;
+        for (Map.Entry<String, List<Candidate>> e : grouped.entrySet()) {
+            keys[n++] = new Key(e.getKey(), e.getValue());
+        }
+        if (keys.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(keys, ORDER);
+        } else {
+            Arrays.sort(keys, ORDER);
+        }
+        return new CandidateIndex(source, keys);
+    }
+
+    /**
+     * Checks whether this index was built from the same candidates,
+     * in the same order.
+     *
+     * @param candidates the candidates
+     * @return <code>true</code> if the index can be reused
+     */
+    boolean isFor(List<Candidate> candidates) {
+        if (candidates.size() != source.length) {
+            return false;
+        }
+        int i = 0;
+        for (Candidate candidate : candidates) {
+            if (candidate != source[i++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of distinct keys.
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the candidates whose key starts with the given prefix.
+     *
+     * @param prefix the prefix, in lower case if <code>caseInsensitive</code>
+     * @param caseInsensitive whether the lower case keys are matched
+     * @return the matching candidates, keyed by their stripped value
+     */
+    Map<String, List<Candidate>> startingWith(String prefix, boolean caseInsensitive) {
+        String folded = fold(prefix);
+        int from = lowerBound(folded);
+        int to = from;
+        int hi = keys.length;
+        // the keys starting with the prefix follow the lower bound
+        while (to < hi) {
+            int mid = (to + hi) >>> 1;
+            if (keys[mid].folded.startsWith(folded)) {
+                to = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        Map<String, List<Candidate>> result = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            Key k = keys[i];
+            if ((caseInsensitive ? k.lower : k.key).startsWith(prefix)) {
+                result.put(k.key, k.candidates);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the candidates whose key matches the given predicate.
+     *
+     * @param predicate the predicate
+     * @param caseInsensitive whether the predicate is given the lower case keys
+     * @return the matching candidates, keyed by their stripped value
+     */
+    Map<String, List<Candidate>> matching(Predicate<String> predicate, boolean caseInsensitive) {
+        IntStream range = IntStream.range(0, keys.length);
+        if (keys.length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        int[] matches = range
+                .filter(i -> predicate.test(caseInsensitive ? keys[i].lower : keys[i].key))
+                .toArray();
+        Map<String, List<Candidate>> result = new LinkedHashMap<>();
+        for (int i : matches) {
+            result.put(keys[i].key, keys[i].candidates);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the candidates whose key is at most <code>max</code> edits away
+     * from the given word, or whose prefix of the length of the word is.
+     *
+     * @param word the word, in lower case if <code>caseInsensitive</code>
+     * @param max the maximum number of edits
+     * @param caseInsensitive whether the lower case keys are matched
+     * @return the matching candidates, keyed by their stripped value
+     */
+    Map<String, List<Candidate>> typos(String word, int max, boolean caseInsensitive) {
+        int[] matches;
+        if (max < 0) {
+            matches = new int[0];
+        } else if (keys.length < WALK_THRESHOLD) {
+            matches = IntStream.range(0, keys.length)
+                    .filter(i -> isTypo(word, caseInsensitive ? keys[i].lower : keys[i].key, max))
+                    .toArray();
+        } else {
+            IntStream chunks = IntStream.range(0, (keys.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            if (keys.length >= PARALLEL_THRESHOLD) {
+                chunks = chunks.parallel();
+            }
+            matches = chunks
+                    .flatMap(c -> IntStream.of(walk(word, max, caseInsensitive,
+                            c * CHUNK_SIZE, Math.min(keys.length, (c + 1) * CHUNK_SIZE))))
+                    .toArray();
+        }
+        Map<String, List<Candidate>> result = new LinkedHashMap<>();
+        for (int i : matches) {
+            result.put(keys[i].key, keys[i].candidates);
+        }
+        return result;
+    }
+
+    static boolean isTypo(String word, String key, int max) {
+        return Levenshtein.distance(word, key, max) <= max
+                || key.length() > word.length()
+                    && Levenshtein.distance(word, key.substring(0, word.length()), max) <= max;
+    }
+
+    /**
+     * Finds the typos among the given range of keys.  The rows of the table
+     * are indexed by the characters of the key, the row at a given depth
+     * being valid as long as the keys share the prefix up to that depth.
+     */
+    private int[] walk(String word, int max, boolean caseInsensitive, int from, int to) {
+        int n = word.length();
+        // the row minimum is at least the depth minus the word length
+        int[][] rows = new int[n + max + 2][n + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+        int[] matches = new int[to - from];
+        int count = 0;
+        String prev = "";
+        int depth = 0;
+        boolean pruned = false;
+        for (int k = from; k < to; k++) {
+            String key = caseInsensitive ? keys[k].lower : keys[k].key;
+            int lcp = 0;
+            int l = Math.min(depth, key.length());
+            while (lcp < l && key.charAt(lcp) == prev.charAt(lcp)) {
+                lcp++;
+            }
+            if (lcp < depth) {
+                depth = lcp;
+                pruned = false;
+            }
+            int m = key.length();
+            while (!pruned && depth < m) {
+                depth++;
+                int[] row = rows[depth];
+                int[] up = rows[depth - 1];
+                char c = key.charAt(depth - 1);
+                row[0] = depth;
+                int min = depth;
+                for (int j = 1; j <= n; j++) {
+                    char d = word.charAt(j - 1);
+                    int v = Math.min(up[j - 1] + (c == d ? 0 : 1), Math.min(up[j], row[j - 1]) + 1);
+                    if (depth > 1 && j > 1 && c == word.charAt(j - 2) && key.charAt(depth - 2) == d) {
+                        v = Math.min(v, rows[depth - 2][j - 2] + 1);
+                    }
+                    row[j] = v;
+                    min = Math.min(min, v);
+                }
+                // the following rows can only be worse
+                pruned = min > max;
+            }
+            if (depth == m && rows[m][n] <= max || m > n && depth >= n && rows[n][n] <= max) {
+                matches[count++] = k;
+            }
+            prev = key;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Lower cases each character, so that the folded prefixes of a string
+     * are the prefixes of the folded string, which is not always the case
+     * with {@link String#toLowerCase()}.
+     */
+    static String fold(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private int lowerBound(String folded) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].folded.compareTo(folded) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+}
@@ -13,6 +13,7 @@ import java.util.ListIterator;
 import org.jline.reader.Expander;
 import org.jline.reader.History;
 import org.jline.reader.History.Entry;
+import org.jline.reader.impl.history.DefaultHistory;
 
 public class DefaultExpander implements Expander {
 
@@ -189,6 +190,22 @@ public class DefaultExpander implements Expander {
     }
 
     protected int searchBackwards(History history, String searchTerm, int startIndex, boolean startsWith) {
+        if (history instanceof DefaultHistory) {
+            DefaultHistory h = (DefaultHistory) history;
+            if (startsWith) {
+                return h.searchPrefix(searchTerm, startIndex, true, false);
+            }
+            int[] candidates = h.candidates(searchTerm, null);
+            if (candidates != null) {
+                for (int i = candidates.length - 1; i >= 0; i--) {
+                    int idx = candidates[i];
+                    if (idx < startIndex && idx <= h.last() && h.get(idx).contains(searchTerm)) {
+                        return idx;
+                    }
+                }
+                return -1;
+            }
+        }
         ListIterator<Entry> it = history.iterator(startIndex);
         while (it.hasPrevious()) {
             History.Entry e = it.previous();
@@ -26,6 +26,10 @@ public class DefaultParser implements Parser {
 
     private boolean eofOnEscapedNewLine;
 
+    private boolean incremental;
+
+    private volatile LexerState lexerState;
+
     //
     // Chainable setters
     //
@@ -50,6 +54,11 @@ public class DefaultParser implements Parser {
         return this;
     }
 
+    public DefaultParser incremental(boolean incremental) {
+        setIncremental(incremental);
+        return this;
+    }
+
     //
     // Java bean getters and setters
     //
@@ -86,8 +95,27 @@ public class DefaultParser implements Parser {
         return eofOnEscapedNewLine;
     }
 
+    /**
+     * Enables the incremental parsing of multi-line buffers.  The state of the
+     * lexer at the start of each line is kept, and the next parsed line is only
+     * lexed from the first line which has changed, or from the line holding the
+     * cursor if it comes before.  This assumes that the delimiters, quotes and
+     * escapes are recognized by looking at the characters before them only, as
+     * done by this class.
+     *
+     * @param incremental whether to parse incrementally
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        this.lexerState = null;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
     public ParsedLine parse(final String line, final int cursor, ParseContext context) {
-        List<String> words = new LinkedList<>();
+        List<String> words = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         int wordCursor = -1;
         int wordIndex = -1;
@@ -95,8 +123,32 @@ public class DefaultParser implements Parser {
         int rawWordCursor = -1;
         int rawWordLength = -1;
         int rawWordStart = 0;
+        int start = 0;
+
+        LexerState state = null;
+        if (incremental && line != null) {
+            state = new LexerState(line, words);
+            LexerState previous = lexerState;
+            int k = previous != null ? previous.checkpoint(line, cursor) : -1;
+            if (k >= 0) {
+                int[] cp = previous.checkpoints;
+                int o = k * LexerState.STRIDE;
+                start = cp[o];
+                words.addAll(previous.words.subList(0, cp[o + 1]));
+                if (cp[o + 2] > 0) {
+                    current.append(previous.words.get(cp[o + 1]), 0, cp[o + 2]);
+                }
+                quoteStart = cp[o + 3];
+                rawWordStart = cp[o + 4];
+                state.copyCheckpoints(previous, k + 1);
+            }
+        }
+
+        for (int i = start; (line != null) && (i < line.length()); i++) {
+            if (state != null && i > start && line.charAt(i - 1) == '\n') {
+                state.addCheckpoint(i, words.size(), current.length(), quoteStart, rawWordStart);
+            }
 
-        for (int i = 0; (line != null) && (i < line.length()); i++) {
             // once we reach the cursor, set the
             // position of the selected index
             if (i == cursor) {
@@ -147,6 +199,10 @@ public class DefaultParser implements Parser {
             rawWordLength = rawWordCursor;
         }
 
+        if (state != null) {
+            lexerState = state;
+        }
+
         if (eofOnEscapedNewLine && isEscapeChar(line, line.length() - 1)) {
             throw new EOFError(-1, -1, "Escaped new line", "newline");
         }
@@ -274,6 +330,69 @@ public class DefaultParser implements Parser {
         return false;
     }
 
+    /**
+     * The words of the last parsed line, and the state of the lexer at the start
+     * of its lines, which only depends on the characters before.  The words being
+     * built at the start of a line are kept as a length, their content being a
+     * prefix of the final word.
+     */
+    private static final class LexerState {
+        static final int STRIDE = 5;
+
+        final String line;
+        final List<String> words;
+        int[] checkpoints = new int[STRIDE * 16];
+        int size;
+
+        LexerState(String line, List<String> words) {
+            this.line = line;
+            this.words = words;
+        }
+
+        /**
+         * Returns the index of the last checkpoint which can be used to parse the
+         * given line with the given cursor, or <code>-1</code> if there is none.
+         */
+        int checkpoint(String newLine, int cursor) {
+            int max = Math.min(cursor, Math.min(line.length(), newLine.length()));
+            int common = 0;
+            while (common < max && line.charAt(common) == newLine.charAt(common)) {
+                common++;
+            }
+            int lo = 0;
+            int hi = size - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (checkpoints[mid * STRIDE] <= common) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        void copyCheckpoints(LexerState previous, int count) {
+            checkpoints = Arrays.copyOf(previous.checkpoints, Math.max(previous.checkpoints.length, STRIDE * 16));
+            size = count;
+        }
+
+        void addCheckpoint(int position, int wordCount, int currentLength, int quoteStart, int rawWordStart) {
+            int o = size * STRIDE;
+            if (o + STRIDE > checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+            }
+            checkpoints[o] = position;
+            checkpoints[o + 1] = wordCount;
+            checkpoints[o + 2] = currentLength;
+            checkpoints[o + 3] = quoteStart;
+            checkpoints[o + 4] = rawWordStart;
+            size++;
+        }
+    }
+
     /**
      * The result of a delimited buffer.
      *
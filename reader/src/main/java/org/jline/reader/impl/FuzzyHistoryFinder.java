@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.jline.reader.History;
+
+/**
+ * Fuzzy search of the history entries, ranking the entries containing
+ * the characters of the query in order.
+ *
+ * The entries are scored in parallel in chunks using the common fork/join
+ * pool, and the indices of the matching entries are kept for each query,
+ * so that when the query grows only the entries which matched the shorter
+ * query need to be scored again.  Only the best match of each distinct
+ * line is returned.
+ */
+public class FuzzyHistoryFinder {
+
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_CONSECUTIVE = 8;
+    private static final int BONUS_BOUNDARY = 8;
+    private static final int BONUS_FIRST_CHAR = 2;
+    private static final int PENALTY_GAP_START = 3;
+    private static final int PENALTY_GAP_EXTENSION = 1;
+
+    private static final int CHUNK_SIZE = 2048;
+
+    /**
+     * A matching history entry.
+     */
+    public static class Match {
+        private final int index;
+        private final String line;
+        private final int score;
+
+        public Match(int index, String line, int score) {
+            this.index = index;
+            this.line = line;
+            this.score = score;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public String line() {
+            return line;
+        }
+
+        public int score() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + line + " (" + score + ")";
+        }
+    }
+
+    /** Best scores first, then the most recent entries */
+    private static final Comparator<Match> RANKING = (m1, m2) -> m1.score != m2.score
+            ? Integer.compare(m2.score, m1.score)
+            : Integer.compare(m2.index, m1.index);
+
+    private final History history;
+    private final boolean caseInsensitive;
+    private final List<String> queries = new ArrayList<>();
+    private final List<int[]> matches = new ArrayList<>();
+    private int first;
+    private int last;
+    private int count;
+
+    public FuzzyHistoryFinder(History history, boolean caseInsensitive) {
+        this.history = history;
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * Returns the best matches of the given query, best first.
+     *
+     * @param query the query
+     * @param max the maximum number of matches to return
+     * @return the matches
+     */
+    public List<Match> search(String query, int max) {
+        if (history.isEmpty() || history.first() != first || history.last() != last) {
+            queries.clear();
+            matches.clear();
+            first = history.first();
+            last = history.last();
+        }
+        // Reuse the entries which matched the longest previous prefix
+        while (!queries.isEmpty() && !query.startsWith(queries.get(queries.size() - 1))) {
+            queries.remove(queries.size() - 1);
+            matches.remove(matches.size() - 1);
+        }
+        int[] candidates = matches.isEmpty() ? null : matches.get(matches.size() - 1);
+        if (history.isEmpty() || candidates != null && candidates.length == 0) {
+            count = 0;
+            return new ArrayList<>();
+        }
+        int size = candidates != null ? candidates.length : last - first + 1;
+        boolean caseSensitive = !caseInsensitive && !query.equals(query.toLowerCase());
+        Result result = ForkJoinPool.commonPool().invoke(
+                new ScoreTask(query, caseSensitive, candidates, 0, size, Math.max(max, 0)));
+        queries.add(query);
+        matches.add(Arrays.copyOf(result.indices, result.count));
+        count = result.count;
+        List<Match> best = new ArrayList<>(result.best.values());
+        best.sort(RANKING);
+        return best.subList(0, Math.min(max, best.size()));
+    }
+
+    /**
+     * The number of entries which matched the last query.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the score of the best match of the query in the given text,
+     * or {@link #NO_MATCH} if the text does not contain the characters of
+     * the query in order.
+     *
+     * The matched characters are searched forward, then backward from the
+     * end of the match, to find a short match.  Each matched character is
+     * worth the same amount, with bonuses for consecutive characters and
+     * characters at the start of words, and penalties for the gaps.
+     *
+     * @param query the query
+     * @param text the text to match
+     * @param caseSensitive whether the case of the characters matters
+     * @param positions if not <code>null</code>, receives the positions of the matched characters
+     * @return the score
+     */
+    public static int score(CharSequence query, CharSequence text, boolean caseSensitive, int[] positions) {
+        int n = query.length();
+        if (n == 0) {
+            return 0;
+        }
+        int qi = 0;
+        int end = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (equals(query.charAt(qi), text.charAt(i), caseSensitive) && ++qi == n) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            return NO_MATCH;
+        }
+        int start = end;
+        qi = n - 1;
+        for (int i = end; i >= 0; i--) {
+            if (equals(query.charAt(qi), text.charAt(i), caseSensitive) && --qi < 0) {
+                start = i;
+                break;
+            }
+        }
+        int score = 0;
+        int prev = -1;
+        qi = 0;
+        for (int i = start; i <= end && qi < n; i++) {
+            if (!equals(query.charAt(qi), text.charAt(i), caseSensitive)) {
+                continue;
+            }
+            score += SCORE_MATCH;
+            if (isBoundary(text, i)) {
+                score += qi == 0 ? BONUS_BOUNDARY * BONUS_FIRST_CHAR : BONUS_BOUNDARY;
+            }
+            if (prev >= 0) {
+                if (i == prev + 1) {
+                    score += BONUS_CONSECUTIVE;
+                } else {
+                    score -= PENALTY_GAP_START + PENALTY_GAP_EXTENSION * (i - prev - 2);
+                }
+            }
+            if (positions != null) {
+                positions[qi] = i;
+            }
+            prev = i;
+            qi++;
+        }
+        return score;
+    }
+
+    private static boolean equals(char q, char c, boolean caseSensitive) {
+        return q == c || !caseSensitive && Character.toLowerCase(q) == Character.toLowerCase(c);
+    }
+
+    private static boolean isBoundary(CharSequence text, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char p = text.charAt(i - 1);
+        char c = text.charAt(i);
+        return !Character.isLetterOrDigit(p) && Character.isLetterOrDigit(c)
+                || Character.isLowerCase(p) && Character.isUpperCase(c);
+    }
+
+    private static class Result {
+        final int[] indices;
+        final int count;
+        final Map<String, Match> best;
+
+        Result(int[] indices, int count, Map<String, Match> best) {
+            this.indices = indices;
+            this.count = count;
+            this.best = best;
+        }
+    }
+
+    private class ScoreTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String query;
+        private final boolean caseSensitive;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final int max;
+
+        ScoreTask(String query, boolean caseSensitive, int[] candidates, int from, int to, int max) {
+            this.query = query;
+            this.caseSensitive = caseSensitive;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.max = max;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                ScoreTask low = new ScoreTask(query, caseSensitive, candidates, from, mid, max);
+                ScoreTask high = new ScoreTask(query, caseSensitive, candidates, mid, to, max);
+                high.fork();
+                return merge(low.compute(), high.join());
+            }
+            int[] indices = new int[to - from];
+            int count = 0;
+            Map<String, Match> best = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                int index = candidates != null ? candidates[i] : first + i;
+                String line = history.get(index);
+                int score = score(query, line, caseSensitive, null);
+                if (score != NO_MATCH) {
+                    indices[count++] = index;
+                    best.merge(line, new Match(index, line, score), (m1, m2) -> RANKING.compare(m1, m2) <= 0 ? m1 : m2);
+                }
+            }
+            return new Result(indices, count, prune(best));
+        }
+
+        private Result merge(Result low, Result high) {
+            int[] indices = Arrays.copyOf(low.indices, low.count + high.count);
+            System.arraycopy(high.indices, 0, indices, low.count, high.count);
+            Map<String, Match> best = low.best;
+            high.best.forEach((line, match) -> best.merge(line, match,
+                    (m1, m2) -> RANKING.compare(m1, m2) <= 0 ? m1 : m2));
+            return new Result(indices, indices.length, prune(best));
+        }
+
+        /**
+         * Keep the best matches only, as the other ones will never be returned.
+         */
+        private Map<String, Match> prune(Map<String, Match> best) {
+            if (best.size() <= max) {
+                return best;
+            }
+            List<Match> list = new ArrayList<>(best.values());
+            list.sort(RANKING);
+            Map<String, Match> pruned = new HashMap<>();
+            for (Match match : list.subList(0, max)) {
+                pruned.put(match.line(), match);
+            }
+            return pruned;
+        }
+    }
+
+}
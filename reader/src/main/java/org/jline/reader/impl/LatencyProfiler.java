@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.Arrays;
+
+/**
+ * Keystroke to paint latency profiler used by {@link LineReaderImpl}
+ * when the {@link org.jline.reader.LineReader.Option#PROFILE_LATENCY}
+ * option is set.
+ *
+ * A measurement starts when the first character of a binding is read
+ * and ends when the reader waits for the next input, i.e. after the
+ * display has been updated and flushed.  The time is split between the
+ * {@link Stage}s, each stage being accounted exclusively of the nested
+ * ones: for example, the time spent parsing while highlighting is only
+ * counted as {@link Stage#PARSE}.
+ *
+ * The methods used to record the measurements are only meant to be
+ * called by the reading thread, while the histograms can be read from
+ * any thread.
+ */
+public class LatencyProfiler {
+
+    public enum Stage {
+        /** Decoding the key sequence into a binding, including the ambiguous key timeout */
+        KEYMAP,
+        /** Executing the widget, excluding the nested stages */
+        WIDGET,
+        /** Calling the {@link org.jline.reader.Highlighter} */
+        HIGHLIGHT,
+        /** Calling the {@link org.jline.reader.Parser} */
+        PARSE,
+        /** Computing the displayed lines and the cursor position */
+        LAYOUT,
+        /** Computing the display diff and writing it to the terminal */
+        DISPLAY,
+        /** The whole keystroke to paint latency */
+        TOTAL
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final int MAX_DEPTH = 16;
+
+    private volatile LatencyHistogram[] histograms;
+    private final long[] current = new long[STAGES.length];
+    private final Stage[] stack = new Stage[MAX_DEPTH];
+    private int depth;
+    private int overflow;
+    private long start;
+    private long last;
+    private boolean enabled;
+    private boolean active;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            active = false;
+        }
+    }
+
+    /**
+     * Returns the histogram for the given stage, in nanoseconds.
+     *
+     * @param stage the stage
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms()[stage.ordinal()];
+    }
+
+    /**
+     * Clears all the histograms.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Starts a new measurement for a binding which has just been read.
+     *
+     * @param bindingStart the {@link System#nanoTime()} at which the first character of the binding was read
+     */
+    public void begin(long bindingStart) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        Arrays.fill(current, 0);
+        current[Stage.KEYMAP.ordinal()] = now - bindingStart;
+        start = bindingStart;
+        last = now;
+        depth = 0;
+        overflow = 0;
+        stack[depth++] = Stage.WIDGET;
+        active = true;
+    }
+
+    /**
+     * Enters a nested stage.  Must be balanced by a call to {@link #exit()}.
+     *
+     * @param stage the stage being entered
+     */
+    public void enter(Stage stage) {
+        if (!active) {
+            return;
+        }
+        if (depth == MAX_DEPTH) {
+            overflow++;
+            return;
+        }
+        long now = System.nanoTime();
+        current[stack[depth - 1].ordinal()] += now - last;
+        last = now;
+        stack[depth++] = stage;
+    }
+
+    /**
+     * Exits the current nested stage.
+     */
+    public void exit() {
+        if (!active) {
+            return;
+        }
+        if (overflow > 0) {
+            overflow--;
+            return;
+        }
+        if (depth > 1) {
+            long now = System.nanoTime();
+            current[stack[--depth].ordinal()] += now - last;
+            last = now;
+        }
+    }
+
+    /**
+     * Ends the current measurement, if any, and records it.
+     */
+    public void end() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        long now = System.nanoTime();
+        current[stack[depth - 1].ordinal()] += now - last;
+        current[Stage.TOTAL.ordinal()] = now - start;
+        LatencyHistogram[] histograms = histograms();
+        for (int i = 0; i < STAGES.length; i++) {
+            histograms[i].record(current[i]);
+        }
+    }
+
+    private LatencyHistogram[] histograms() {
+        LatencyHistogram[] h = histograms;
+        if (h == null) {
+            synchronized (this) {
+                h = histograms;
+                if (h == null) {
+                    h = new LatencyHistogram[STAGES.length];
+                    for (int i = 0; i < h.length; i++) {
+                        h[i] = new LatencyHistogram();
+                    }
+                    histograms = h;
+                }
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("LatencyProfiler[");
+        for (Stage stage : STAGES) {
+            if (stage.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(stage.name().toLowerCase()).append('=').append(getHistogram(stage));
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+
+/**
+ * The rows of the displayed buffer, wrapped at the terminal width.
+ *
+ * The displayed text is laid out as logical lines, each one starting with
+ * its prompt.  The rows of each logical line are kept, so that only the
+ * lines which changed since the previous layout are wrapped again.
+ */
+class Layout {
+
+    private final int tabWidth;
+    private int columns = -1;
+    private boolean delayLineWrap;
+    private List<AttributedString> lines = Collections.emptyList();
+    private List<List<AttributedString>> wrapped = Collections.emptyList();
+    private int[] rowStarts = new int[1];
+
+    Layout(int tabWidth) {
+        this.tabWidth = tabWidth;
+    }
+
+    /**
+     * Lays out the given lines, reusing the rows of the unchanged lines.
+     *
+     * @param newLines the lines, all of them but the last one ending with a new line
+     * @param columns the terminal width
+     * @param delayLineWrap whether the terminal delays the line wrap
+     * @return the rows
+     */
+    List<AttributedString> update(List<AttributedString> newLines, int columns, boolean delayLineWrap) {
+        int n = newLines.size();
+        int prefix = 0;
+        int suffix = 0;
+        if (columns == this.columns && delayLineWrap == this.delayLineWrap) {
+            int max = Math.min(n, lines.size());
+            while (prefix < max && lines.get(prefix).equals(newLines.get(prefix))) {
+                prefix++;
+            }
+            max = Math.min(n, lines.size()) - prefix;
+            while (suffix < max && lines.get(lines.size() - 1 - suffix).equals(newLines.get(n - 1 - suffix))) {
+                suffix++;
+            }
+        }
+        List<List<AttributedString>> newWrapped = new ArrayList<>(n);
+        newWrapped.addAll(wrapped.subList(0, prefix));
+        for (int i = prefix; i < n - suffix; i++) {
+            newWrapped.add(wrap(newLines.get(i), columns, delayLineWrap));
+        }
+        newWrapped.addAll(wrapped.subList(wrapped.size() - suffix, wrapped.size()));
+
+        int[] newRowStarts = new int[n + 1];
+        List<AttributedString> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            newRowStarts[i] = rows.size();
+            rows.addAll(newWrapped.get(i));
+        }
+        newRowStarts[n] = rows.size();
+
+        this.columns = columns;
+        this.delayLineWrap = delayLineWrap;
+        this.lines = newLines;
+        this.wrapped = newWrapped;
+        this.rowStarts = newRowStarts;
+        return rows;
+    }
+
+    /**
+     * Returns the index of the first row of the given line.
+     *
+     * @param line the index of the line
+     * @return the index of the row
+     */
+    int rowStart(int line) {
+        return rowStarts[Math.max(0, Math.min(line, rowStarts.length - 2))];
+    }
+
+    /**
+     * Splits the text after the new lines.
+     *
+     * @param text the text
+     * @return the lines, including their new line
+     */
+    static List<AttributedString> splitLines(AttributedString text) {
+        List<AttributedString> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.subSequence(start, i + 1));
+                start = i + 1;
+            }
+        }
+        lines.add(text.subSequence(start, text.length()));
+        return lines;
+    }
+
+    private List<AttributedString> wrap(AttributedString line, int columns, boolean delayLineWrap) {
+        AttributedStringBuilder sb = new AttributedStringBuilder().tabs(tabWidth);
+        sb.append(line);
+        List<AttributedString> rows = sb.columnSplitLength(columns, true, delayLineWrap);
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\n') {
+            // drop the empty row following the new line
+            rows.remove(rows.size() - 1);
+        }
+        return rows;
+    }
+
+}
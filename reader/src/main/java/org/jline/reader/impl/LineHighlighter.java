@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.jline.reader.IncrementalHighlighter;
+import org.jline.reader.LineReader;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+
+/**
+ * An incremental highlighter styling the buffer line by line.
+ *
+ * The state of the lexer at the start of each line, for example whether it
+ * is inside a comment or a string, is kept with the highlighted lines.  When
+ * the buffer is edited, the lines are highlighted again from the first edited
+ * line, until a line after the edited range starts in the same state as before.
+ *
+ * @param <S> the type of the lexer states, which are compared with {@link Object#equals(Object)}
+ */
+public abstract class LineHighlighter<S> implements IncrementalHighlighter {
+
+    private String buffer;
+    private List<AttributedString> lines = new ArrayList<>();
+    private List<S> states = new ArrayList<>();
+
+    /**
+     * Returns the state of the lexer at the start of the buffer.
+     *
+     * @return the initial state
+     */
+    protected abstract S initialState();
+
+    /**
+     * Highlights a line of the buffer.
+     *
+     * @param reader the line reader
+     * @param line the line, without its new line character
+     * @param state the state of the lexer at the start of the line
+     * @param sb the builder receiving the highlighted line
+     * @return the state of the lexer at the start of the next line
+     */
+    protected abstract S highlightLine(LineReader reader, String line, S state, AttributedStringBuilder sb);
+
+    @Override
+    public synchronized AttributedString highlight(LineReader reader, String buffer) {
+        List<S> newStates = new ArrayList<>();
+        newStates.add(initialState());
+        return update(reader, buffer, new ArrayList<>(), newStates, 0, buffer.length() + 1);
+    }
+
+    @Override
+    public synchronized AttributedString highlight(LineReader reader, String buffer,
+                                                   String previousBuffer, AttributedString previous,
+                                                   int start, int previousEnd, int end) {
+        if (this.buffer == null || !this.buffer.equals(previousBuffer)) {
+            return highlight(reader, buffer);
+        }
+        int first = 0;
+        int lineStart = 0;
+        for (int i = buffer.indexOf('\n'); i >= 0 && i < start; i = buffer.indexOf('\n', i + 1)) {
+            first++;
+            lineStart = i + 1;
+        }
+        return update(reader, buffer,
+                new ArrayList<>(lines.subList(0, first)),
+                new ArrayList<>(states.subList(0, first + 1)),
+                lineStart, end);
+    }
+
+    private AttributedString update(LineReader reader, String buffer,
+                                    List<AttributedString> newLines, List<S> newStates,
+                                    int lineStart, int end) {
+        int total = 1;
+        for (int i = buffer.indexOf('\n'); i >= 0; i = buffer.indexOf('\n', i + 1)) {
+            total++;
+        }
+        S state = newStates.get(newStates.size() - 1);
+        int i = lineStart;
+        while (true) {
+            int nl = buffer.indexOf('\n', i);
+            AttributedStringBuilder sb = new AttributedStringBuilder();
+            state = highlightLine(reader, nl < 0 ? buffer.substring(i) : buffer.substring(i, nl), state, sb);
+            newLines.add(sb.toAttributedString());
+            if (nl < 0) {
+                break;
+            }
+            i = nl + 1;
+            newStates.add(state);
+            if (i > end) {
+                // the rest of the buffer is unchanged, and so are its lines
+                // if they start in the same state
+                int old = lines.size() - (total - newLines.size());
+                if (old > 0 && old < lines.size() && Objects.equals(state, states.get(old))) {
+                    newLines.addAll(lines.subList(old, lines.size()));
+                    newStates.addAll(states.subList(old + 1, states.size()));
+                    break;
+                }
+            }
+        }
+        this.buffer = buffer;
+        this.lines = newLines;
+        this.states = newStates;
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        for (int l = 0; l < newLines.size(); l++) {
+            if (l > 0) {
+                sb.append("\n");
+            }
+            sb.append(newLines.get(l));
+        }
+        return sb.toAttributedString();
+    }
+
+}
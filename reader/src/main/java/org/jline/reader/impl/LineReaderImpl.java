@@ -15,7 +15,12 @@ import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.time.Instant;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 import java.util.regex.Matcher;
@@ -28,11 +33,13 @@ import org.jline.keymap.BindingReader;
 import org.jline.keymap.KeyMap;
 import org.jline.reader.*;
 import org.jline.reader.Parser.ParseContext;
+import org.jline.reader.impl.completer.AggregateCompleter;
 import org.jline.reader.impl.history.DefaultHistory;
 import org.jline.terminal.*;
 import org.jline.terminal.Attributes.ControlChar;
 import org.jline.terminal.Terminal.Signal;
 import org.jline.terminal.Terminal.SignalHandler;
+import org.jline.terminal.impl.MouseSupport;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
@@ -76,6 +83,7 @@ public class LineReaderImpl implements LineReader, Flushable
     public static final int    DEFAULT_ERRORS = 2;
     public static final long   DEFAULT_BLINK_MATCHING_PAREN = 500L;
     public static final long   DEFAULT_AMBIGUOUS_BINDING = 1000L;
+    public static final long   DEFAULT_AMBIGUOUS_BINDING_MIN = BindingReader.DEFAULT_MIN_AMBIGUOUS_TIMEOUT;
     public static final String DEFAULT_SECONDARY_PROMPT_PATTERN = "%M> ";
     public static final String DEFAULT_OTHERS_GROUP_NAME = "others";
     public static final String DEFAULT_ORIGINAL_GROUP_NAME = "original";
@@ -83,6 +91,12 @@ public class LineReaderImpl implements LineReader, Flushable
     public static final String DEFAULT_COMPLETION_STYLE_DESCRIPTION = "90"; // dark gray
     public static final String DEFAULT_COMPLETION_STYLE_GROUP = "35;1";     // magenta
     public static final String DEFAULT_COMPLETION_STYLE_SELECTION = "7";    // inverted
+    public static final int    DEFAULT_FUZZY_SEARCH_MATCHES = 10;
+    public static final long   DEFAULT_COMPLETION_TIMEOUT = 0L;
+    public static final long   DEFAULT_UNDO_MEMORY = 16L * 1024 * 1024;
+
+    /** Interval at which the candidates of a background completion are displayed */
+    private static final long COMPLETION_REFRESH = 100L;
 
     private static final int MIN_ROWS = 3;
 
@@ -208,7 +222,7 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected KillRing killRing = new KillRing();
 
-    protected UndoTree<Buffer> undo = new UndoTree<>(this::setBuffer);
+    protected UndoTree<Buffer> undo = new UndoTree<>(this::setBuffer, new BufferDiffer());
     protected boolean isUndo;
 
     /*
@@ -234,12 +248,39 @@ public class LineReaderImpl implements LineReader, Flushable
     protected boolean skipRedisplay;
     protected Display display;
 
+    protected final LatencyProfiler profiler = new LatencyProfiler();
+
     protected boolean overTyping = false;
 
     protected String keyMap;
 
     protected int smallTerminalOffset = 0;
 
+    /** The index of the last completion candidates */
+    private CandidateIndex candidateIndex;
+
+    private ExecutorService completionExecutor;
+
+    /** Whether some candidates of the last completion are missing */
+    private boolean partialCompletion;
+
+    /** The buffer lines parsed for the secondary prompts, and what is missing after each one */
+    private final List<String> missingsLines = new ArrayList<>();
+    private final List<String> missings = new ArrayList<>();
+    private Parser missingsParser;
+
+    /** The rows of the displayed buffer */
+    private final Layout layout = new Layout(TAB_WIDTH);
+
+    /** The last highlighted buffer, and what the highlighting depended on */
+    private AttributedString highlighted;
+    private Highlighter highlightedBy;
+    private String highlightedBuffer;
+    private String highlightedSearch;
+    private RegionType highlightedRegion;
+    private int highlightedMark;
+    private int highlightedCursor;
+
 
 
     public LineReaderImpl(Terminal terminal) throws IOException {
@@ -307,7 +348,10 @@ public class LineReaderImpl implements LineReader, Flushable
 
     @Override
     public MouseEvent readMouseEvent() {
-        return terminal.readMouseEvent(bindingReader::readCharacter);
+        MouseEvent event = terminal.readMouseEvent(bindingReader::readCharacter, bindingReader.getLastBinding());
+        return MouseSupport.coalesce(event,
+                () -> bindingReader.available() > 0 ? bindingReader.readCharacter() : -1,
+                bindingReader::unread);
     }
 
     /**
@@ -347,6 +391,7 @@ public class LineReaderImpl implements LineReader, Flushable
 
     public void setHighlighter(Highlighter highlighter) {
         this.highlighter = highlighter;
+        this.highlighted = null;
     }
 
     public Highlighter getHighlighter() {
@@ -497,8 +542,13 @@ public class LineReaderImpl implements LineReader, Flushable
                 buf.write(buffer);
             }
             undo.clear();
+            undo.setMaxSize(getLong(UNDO_MEMORY, DEFAULT_UNDO_MEMORY));
             parsedLine = null;
+            highlighted = null;
             keyMap = MAIN;
+            profiler.setEnabled(isSet(Option.PROFILE_LATENCY));
+            bindingReader.setAdaptiveTimeout(isSet(Option.ADAPTIVE_AMBIGUOUS_BINDING));
+            bindingReader.setMinAmbiguousTimeout(getLong(AMBIGUOUS_BINDING_MIN, DEFAULT_AMBIGUOUS_BINDING_MIN));
 
             if (history != null) {
                 history.attach(this);
@@ -531,7 +581,7 @@ public class LineReaderImpl implements LineReader, Flushable
                     if (isSet(Option.AUTO_FRESH_LINE))
                         callWidget(FRESH_LINE);
                     if (isSet(Option.MOUSE))
-                        terminal.trackMouse(Terminal.MouseTracking.Normal);
+                        terminal.trackMouse(Terminal.MouseTracking.Normal, true);
                     if (isSet(Option.BRACKETED_PASTE))
                         terminal.writer().write(BRACKETED_PASTE_ON);
                 } else {
@@ -624,6 +674,7 @@ public class LineReaderImpl implements LineReader, Flushable
             synchronized (this) {
                 this.reading = false;
 
+                profiler.end();
                 cleanup();
                 if (originalAttributes != null) {
                     terminal.setAttributes(originalAttributes);
@@ -761,7 +812,12 @@ public class LineReaderImpl implements LineReader, Flushable
      * @return the character, or -1 if an EOF is received.
      */
     public int readCharacter() {
-        return bindingReader.readCharacter();
+        profiler.end();
+        int c = bindingReader.readCharacter();
+        if (c >= 0) {
+            profiler.begin(System.nanoTime());
+        }
+        return c;
     }
 
     public int peekCharacter(long timeout) {
@@ -784,7 +840,7 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     public Binding readBinding(KeyMap<Binding> keys, KeyMap<Binding> local) {
-        Binding o = bindingReader.readBinding(keys, local);
+        Binding o = doReadBinding(keys, local);
         /*
          * The kill ring keeps record of whether or not the
          * previous command was a yank or a kill. We reset
@@ -803,6 +859,29 @@ public class LineReaderImpl implements LineReader, Flushable
         return o;
     }
 
+    /**
+     * Read a binding, ending the current latency measurement before
+     * waiting for the input and starting a new one once the binding is read.
+     */
+    protected <T> T doReadBinding(KeyMap<T> keys, KeyMap<T> local) {
+        profiler.end();
+        T o = bindingReader.readBinding(keys, local);
+        if (o != null) {
+            profiler.begin(bindingReader.getLastBindingStart());
+        }
+        return o;
+    }
+
+    /**
+     * The latency profiler, which records measurements when the
+     * {@link Option#PROFILE_LATENCY} option is set.
+     *
+     * @return the latency profiler
+     */
+    public LatencyProfiler getLatencyProfiler() {
+        return profiler;
+    }
+
     @Override
     public ParsedLine getParsedLine() {
         return parsedLine;
@@ -862,6 +941,7 @@ public class LineReaderImpl implements LineReader, Flushable
     @Override
     public LineReader variable(String name, Object value) {
         variables.put(name, value);
+        highlighted = null;
         return this;
     }
 
@@ -878,11 +958,13 @@ public class LineReaderImpl implements LineReader, Flushable
     @Override
     public void setVariable(String name, Object value) {
         variables.put(name, value);
+        highlighted = null;
     }
 
     @Override
     public LineReader option(Option option, boolean value) {
         options.put(option, value);
+        highlighted = null;
         return this;
     }
 
@@ -895,11 +977,13 @@ public class LineReaderImpl implements LineReader, Flushable
     @Override
     public void setOpt(Option option) {
         options.put(option, Boolean.TRUE);
+        highlighted = null;
     }
 
     @Override
     public void unsetOpt(Option option) {
         options.put(option, Boolean.FALSE);
+        highlighted = null;
     }
 
 
@@ -1904,7 +1988,7 @@ public class LineReaderImpl implements LineReader, Flushable
         while (true) {
             post = () -> new AttributedString(searchPrompt + searchBuffer.toString() + "_");
             redisplay();
-            Binding b = bindingReader.readBinding(keyMap);
+            Binding b = doReadBinding(keyMap, null);
             if (b instanceof Reference) {
                 String func = ((Reference) b).name();
                 switch (func) {
@@ -2301,7 +2385,7 @@ public class LineReaderImpl implements LineReader, Flushable
         } else {
             viMoveMode = mode;
             mark = -1;
-            Binding b = bindingReader.readBinding(getKeys(), keyMaps.get(VIOPP));
+            Binding b = doReadBinding(getKeys(), keyMaps.get(VIOPP));
             if (b == null || new Reference(SEND_BREAK).equals(b)) {
                 viMoveMode = ViMoveMode.NORMAL;
                 mark = oldMark;
@@ -2359,6 +2443,184 @@ public class LineReaderImpl implements LineReader, Flushable
         return doSearchHistory(true);
     }
 
+    /**
+     * Search the history with a fuzzy query, showing the best matches
+     * below the prompt.
+     *
+     * @return <code>true</code>
+     */
+    protected boolean historyFuzzySearch() {
+        if (history.isEmpty()) {
+            return false;
+        }
+        FuzzySearchSupport support = new FuzzySearchSupport(
+                new FuzzyHistoryFinder(history, isSet(Option.CASE_INSENSITIVE_SEARCH)));
+        support.update();
+        post = support;
+        redisplay();
+        try {
+            while (true) {
+                Binding operation = readBinding(getKeys());
+                String ref = (operation instanceof Reference) ? ((Reference) operation).name() : "";
+                switch (ref) {
+                    case SEND_BREAK:
+                        beep();
+                        buf.copyFrom(support.originalBuffer);
+                        return true;
+                    case ACCEPT_LINE:
+                        support.refresh();
+                        support.accept();
+                        return true;
+                    case SELF_INSERT:
+                        support.query.append(getLastBinding());
+                        support.dirty = true;
+                        break;
+                    case BACKWARD_DELETE_CHAR:
+                        if (support.query.length() > 0) {
+                            support.query.setLength(support.query.length() - 1);
+                            support.dirty = true;
+                        }
+                        break;
+                    case UP_LINE_OR_HISTORY:
+                    case UP_LINE_OR_SEARCH:
+                    case UP_HISTORY:
+                        support.refresh();
+                        support.select(support.selection - 1);
+                        break;
+                    case DOWN_LINE_OR_HISTORY:
+                    case DOWN_LINE_OR_SEARCH:
+                    case DOWN_HISTORY:
+                    case HISTORY_FUZZY_SEARCH:
+                        support.refresh();
+                        support.select(support.selection + 1);
+                        break;
+                    default:
+                        support.refresh();
+                        support.accept();
+                        pushBackBinding();
+                        return true;
+                }
+                // Do not rank the history again while the user is typing
+                if (bindingReader.available() == 0) {
+                    support.refresh();
+                    redisplay();
+                }
+            }
+        } catch (IOError e) {
+            // Ignore Ctrl+C interrupts and just exit the loop
+            if (!(e.getCause() instanceof InterruptedException)) {
+                throw e;
+            }
+            return true;
+        } finally {
+            post = null;
+        }
+    }
+
+    private class FuzzySearchSupport implements Supplier<AttributedString> {
+        final FuzzyHistoryFinder finder;
+        final Buffer originalBuffer;
+        final StringBuilder query = new StringBuilder();
+        List<FuzzyHistoryFinder.Match> matches = Collections.emptyList();
+        /** The matches as candidates, in rank order, laid out as the completion menu */
+        List<Candidate> candidates = Collections.emptyList();
+        ColumnLayout layout;
+        int selection;
+        boolean dirty;
+
+        FuzzySearchSupport(FuzzyHistoryFinder finder) {
+            this.finder = finder;
+            this.originalBuffer = buf.copy();
+        }
+
+        /**
+         * Rank the history entries against the query, keeping as many
+         * matches as can be displayed below the prompt.
+         */
+        void update() {
+            AttributedString text = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
+            int promptLines = text.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
+            int max = Math.max(1, Math.min(DEFAULT_FUZZY_SEARCH_MATCHES, size.getRows() - promptLines - 1));
+            matches = finder.search(query.toString(), max);
+            candidates = new ArrayList<>(matches.size());
+            String q = query.toString();
+            boolean caseSensitive = !isSet(Option.CASE_INSENSITIVE_SEARCH) && !q.equals(q.toLowerCase());
+            int[] positions = new int[q.length()];
+            for (FuzzyHistoryFinder.Match match : matches) {
+                String line = match.line();
+                FuzzyHistoryFinder.score(q, line, caseSensitive, positions);
+                // Highlight the matched characters as the completed prefix of a candidate
+                AttributedStringBuilder asb = new AttributedStringBuilder();
+                int p = 0;
+                for (int j = 0; j < line.length(); j++) {
+                    char c = line.charAt(j);
+                    boolean matched = p < positions.length && positions[p] == j;
+                    if (matched) {
+                        p++;
+                    }
+                    if (c == '\n') {
+                        asb.style(AttributedStyle.DEFAULT).append("\\n");
+                    } else {
+                        asb.style(matched ? getCompletionStyleStarting() : AttributedStyle.DEFAULT).append(c);
+                    }
+                }
+                String displ = asb.columnSubSequence(0, size.getColumns() - 1).toAnsi();
+                candidates.add(new Candidate(line, displ, null, null, null, null, false));
+            }
+            // Keep the ranking down the columns whatever the list-rows-first option
+            layout = new ColumnLayout(Collections.<Object>singletonList(candidates), display::wcwidth, size.getColumns(), false);
+            dirty = false;
+            select(0);
+        }
+
+        void refresh() {
+            if (dirty) {
+                update();
+                if (matches.isEmpty()) {
+                    beep();
+                }
+            }
+        }
+
+        void select(int index) {
+            if (matches.isEmpty()) {
+                selection = 0;
+                buf.copyFrom(originalBuffer);
+                return;
+            }
+            selection = (index + matches.size()) % matches.size();
+            buf.clear();
+            buf.write(matches.get(selection).line());
+        }
+
+        void accept() {
+            if (!matches.isEmpty()) {
+                history.moveTo(matches.get(selection).index());
+            }
+        }
+
+        @Override
+        public AttributedString get() {
+            AttributedStringBuilder sb = new AttributedStringBuilder();
+            sb.append(matches.isEmpty() ? "failing fuzzy-search: " : "fuzzy-search: ")
+                    .append(query)
+                    .append("_");
+            sb.style(getCompletionStyleDescription())
+                    .append("  ")
+                    .append(Integer.toString(finder.count()))
+                    .append("/")
+                    .append(Integer.toString(history.size()))
+                    .style(AttributedStyle.DEFAULT);
+            if (!candidates.isEmpty()) {
+                AttributedString list = layout.render(0, layout.rows, candidates.get(selection), "");
+                if (list.length() > 0) {
+                    sb.append("\n").append(list.subSequence(0, list.length() - 1));
+                }
+            }
+            return sb.toAttributedString();
+        }
+    }
+
     static class Pair<U,V> {
         final U u; final V v;
         public Pair(U u, V v) {
@@ -2391,6 +2653,13 @@ public class LineReaderImpl implements LineReader, Flushable
                         + (searchBackward ? "bck-i-search" : "fwd-i-search")
                         + ": " + searchTerm + "_");
 
+        // The compiled pattern and the history candidates are kept
+        // between keystrokes and reused while the search term grows
+        String patternString = null;
+        Pattern pat = null;
+        String candidatesTerm = null;
+        int[] candidates = null;
+
         redisplay();
         try {
             while (true) {
@@ -2435,8 +2704,21 @@ public class LineReaderImpl implements LineReader, Flushable
                     searchFailing = false;
                 } else {
                     boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE_SEARCH);
-                    Pattern pat = Pattern.compile(pattern, caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
-                                                                           : Pattern.UNICODE_CASE);
+                    if (pat == null || !pattern.equals(patternString)
+                            || caseInsensitive != ((pat.flags() & Pattern.CASE_INSENSITIVE) != 0)) {
+                        pat = Pattern.compile(pattern, caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+                                                                       : Pattern.UNICODE_CASE);
+                        patternString = pattern;
+                    }
+                    if (history instanceof DefaultHistory) {
+                        String term = searchTerm.toString();
+                        if (candidatesTerm == null || !term.contains(candidatesTerm)) {
+                            candidates = ((DefaultHistory) history).candidates(term, null);
+                        } else if (!term.equals(candidatesTerm)) {
+                            candidates = ((DefaultHistory) history).candidates(term, candidates);
+                        }
+                        candidatesTerm = term;
+                    }
                     Pair<Integer, Integer> pair = null;
                     if (searchBackward) {
                         boolean nextOnly = next;
@@ -2445,11 +2727,7 @@ public class LineReaderImpl implements LineReader, Flushable
                                 .max(Comparator.comparing(Pair::getV))
                                 .orElse(null);
                         if (pair == null) {
-                            pair = StreamSupport.stream(
-                                    Spliterators.spliteratorUnknownSize(history.reverseIterator(searchIndex < 0 ? history.last() : searchIndex - 1), Spliterator.ORDERED), false)
-                                    .flatMap(e -> matches(pat, e.line(), e.index()).stream())
-                                    .findFirst()
-                                    .orElse(null);
+                            pair = searchHistory(pat, candidates, searchIndex < 0 ? history.last() : searchIndex - 1, true);
                         }
                     } else {
                         boolean nextOnly = next;
@@ -2458,11 +2736,7 @@ public class LineReaderImpl implements LineReader, Flushable
                                 .min(Comparator.comparing(Pair::getV))
                                 .orElse(null);
                         if (pair == null) {
-                            pair = StreamSupport.stream(
-                                    Spliterators.spliteratorUnknownSize(history.iterator((searchIndex < 0 ? history.last() : searchIndex) + 1), Spliterator.ORDERED), false)
-                                    .flatMap(e -> matches(pat, e.line(), e.index()).stream())
-                                    .findFirst()
-                                    .orElse(null);
+                            pair = searchHistory(pat, candidates, (searchIndex < 0 ? history.last() : searchIndex) + 1, false);
                             if (pair == null && searchIndex >= 0) {
                                 pair = matches(pat, originalBuffer.toString(), -1).stream()
                                         .min(Comparator.comparing(Pair::getV))
@@ -2500,6 +2774,35 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    /**
+     * Find the first match of the pattern in the history, starting at the given index.
+     * When candidates are given, only these entries are matched.
+     */
+    private Pair<Integer, Integer> searchHistory(Pattern pat, int[] candidates, int from, boolean backward) {
+        if (candidates == null) {
+            Iterator<History.Entry> it = backward ? history.reverseIterator(from) : history.iterator(from);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                    .flatMap(e -> matches(pat, e.line(), e.index()).stream())
+                    .findFirst()
+                    .orElse(null);
+        }
+        int i = Arrays.binarySearch(candidates, from);
+        if (i < 0) {
+            i = backward ? -i - 2 : -i - 1;
+        }
+        for (; i >= 0 && i < candidates.length; i += backward ? -1 : 1) {
+            int index = candidates[i];
+            if (index < history.first() || index > history.last()) {
+                continue;
+            }
+            Matcher m = pat.matcher(history.get(index));
+            if (m.find()) {
+                return new Pair<>(index, m.start());
+            }
+        }
+        return null;
+    }
+
     private List<Pair<Integer, Integer>> matches(Pattern p, String line, int index) {
         List<Pair<Integer, Integer>> starts = new ArrayList<>();
         Matcher m = p.matcher(line);
@@ -2642,6 +2945,9 @@ public class LineReaderImpl implements LineReader, Flushable
 
     public int searchBackwards(String searchTerm, int startIndex, boolean startsWith) {
         boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE_SEARCH);
+        if (startsWith && history instanceof DefaultHistory) {
+            return ((DefaultHistory) history).searchPrefix(searchTerm, startIndex, true, caseInsensitive);
+        }
         if (caseInsensitive) {
             searchTerm = searchTerm.toLowerCase();
         }
@@ -2668,6 +2974,11 @@ public class LineReaderImpl implements LineReader, Flushable
         if (startIndex > history.last()) {
             startIndex = history.last();
         }
+        if (startsWith && history instanceof DefaultHistory) {
+            boolean skip = searchIndex != -1 && startIndex >= history.first() && startIndex <= history.last();
+            return ((DefaultHistory) history).searchPrefix(searchTerm, skip ? startIndex + 1 : startIndex,
+                    false, isSet(Option.CASE_INSENSITIVE_SEARCH));
+        }
         ListIterator<History.Entry> it = history.iterator(startIndex);
         if (searchIndex != -1 && it.hasNext()) {
             it.next();
@@ -2729,7 +3040,7 @@ public class LineReaderImpl implements LineReader, Flushable
             }
         }
         try {
-            parsedLine = parser.parse(buf.toString(), buf.cursor(), ParseContext.ACCEPT_LINE);
+            parsedLine = parse(buf.toString(), buf.cursor(), ParseContext.ACCEPT_LINE);
         } catch (EOFError e) {
             buf.write("\n");
             return true;
@@ -3389,6 +3700,7 @@ public class LineReaderImpl implements LineReader, Flushable
         widgets.put(FRESH_LINE, this::freshLine);
         widgets.put(FORWARD_CHAR, this::forwardChar);
         widgets.put(FORWARD_WORD, this::forwardWord);
+        widgets.put(HISTORY_FUZZY_SEARCH, this::historyFuzzySearch);
         widgets.put(HISTORY_INCREMENTAL_SEARCH_BACKWARD, this::historyIncrementalSearchBackward);
         widgets.put(HISTORY_INCREMENTAL_SEARCH_FORWARD, this::historyIncrementalSearchForward);
         widgets.put(HISTORY_SEARCH_BACKWARD, this::historySearchBackward);
@@ -3501,6 +3813,15 @@ public class LineReaderImpl implements LineReader, Flushable
             return;
         }
 
+        profiler.enter(LatencyProfiler.Stage.LAYOUT);
+        try {
+            doRedisplay(flush);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    private void doRedisplay(boolean flush) {
         Status status = Status.getStatus(terminal, false);
         if (status != null) {
             status.redraw();
@@ -3547,19 +3868,17 @@ public class LineReaderImpl implements LineReader, Flushable
                 full = sb.toAttributedString();
             }
 
-            display.update(Collections.singletonList(full), cursor - smallTerminalOffset, flush);
+            updateDisplay(Collections.singletonList(full), cursor - smallTerminalOffset, flush);
             return;
         }
 
         List<AttributedString> secondaryPrompts = new ArrayList<>();
-        AttributedString full = getDisplayedBufferWithPrompts(secondaryPrompts);
-
         List<AttributedString> newLines;
         if (size.getColumns() <= 0) {
             newLines = new ArrayList<>();
-            newLines.add(full);
+            newLines.add(getDisplayedBufferWithPrompts(secondaryPrompts));
         } else {
-            newLines = full.columnSplitLength(size.getColumns(), true, display.delayLineWrap());
+            newLines = layoutBuffer(secondaryPrompts);
         }
 
         List<AttributedString> rightPromptLines;
@@ -3578,21 +3897,49 @@ public class LineReaderImpl implements LineReader, Flushable
 
         int cursorPos = -1;
         if (size.getColumns() > 0) {
-            AttributedStringBuilder sb = new AttributedStringBuilder().tabs(TAB_WIDTH);
-            sb.append(prompt);
+            // only the line holding the cursor needs to be wrapped,
+            // the rows of the previous lines are known from the layout
             String buffer = buf.upToCursor();
             if (maskingCallback != null) {
                 buffer = maskingCallback.display(buffer);
             }
-            sb.append(insertSecondaryPrompts(new AttributedString(buffer), secondaryPrompts, false));
-            List<AttributedString> promptLines = sb.columnSplitLength(size.getColumns(), false, display.delayLineWrap());
-            if (!promptLines.isEmpty()) {
-                cursorPos = size.cursorPos(promptLines.size() - 1,
-                                           promptLines.get(promptLines.size() - 1).columnLength());
+            int line = 0;
+            for (int i = buffer.indexOf('\n'); i >= 0; i = buffer.indexOf('\n', i + 1)) {
+                line++;
+            }
+            AttributedStringBuilder sb = new AttributedStringBuilder().tabs(TAB_WIDTH);
+            if (line == 0) {
+                sb.append(prompt);
+            } else if (line <= secondaryPrompts.size()) {
+                sb.append(secondaryPrompts.get(line - 1));
             }
+            sb.append(buffer.substring(buffer.lastIndexOf('\n') + 1));
+            List<AttributedString> promptLines = sb.columnSplitLength(size.getColumns(), false, display.delayLineWrap());
+            cursorPos = size.cursorPos(layout.rowStart(line) + promptLines.size() - 1,
+                                       promptLines.get(promptLines.size() - 1).columnLength());
         }
 
-        display.update(newLines, cursorPos, flush);
+        updateDisplay(newLines, cursorPos, flush);
+    }
+
+    /**
+     * Lays out the text returned by {@link #getDisplayedBufferWithPrompts(List)},
+     * wrapping again only the lines which have changed since the previous redisplay.
+     * @param secondaryPrompts a list to store the secondary prompts
+     * @return the rows to display
+     */
+    private List<AttributedString> layoutBuffer(List<AttributedString> secondaryPrompts) {
+        List<AttributedString> lines = Layout.splitLines(getDisplayedBufferWithPrompts(secondaryPrompts));
+        return layout.update(lines, size.getColumns(), display.delayLineWrap());
+    }
+
+    private void updateDisplay(List<AttributedString> newLines, int cursorPos, boolean flush) {
+        profiler.enter(LatencyProfiler.Stage.DISPLAY);
+        try {
+            display.update(newLines, cursorPos, flush);
+        } finally {
+            profiler.exit();
+        }
     }
 
     private void concat(List<AttributedString> lines, AttributedStringBuilder sb) {
@@ -3631,11 +3978,62 @@ public class LineReaderImpl implements LineReader, Flushable
             buffer = maskingCallback.display(buffer);
         } 
         if (highlighter != null && !isSet(Option.DISABLE_HIGHLIGHTER)) {
-            return highlighter.highlight(this, buffer);
+            String search = getSearchTerm();
+            int cursor = regionActive != RegionType.NONE ? buf.cursor() : -1;
+            boolean sameContext = highlighted != null && highlighter == highlightedBy
+                    && Objects.equals(search, highlightedSearch)
+                    && regionActive == highlightedRegion
+                    && regionMark == highlightedMark
+                    && cursor == highlightedCursor;
+            if (sameContext && buffer.equals(highlightedBuffer)) {
+                return highlighted;
+            }
+            profiler.enter(LatencyProfiler.Stage.HIGHLIGHT);
+            try {
+                AttributedString result;
+                if (sameContext && highlighter instanceof IncrementalHighlighter) {
+                    String previous = highlightedBuffer;
+                    int max = Math.min(buffer.length(), previous.length());
+                    int start = 0;
+                    while (start < max && buffer.charAt(start) == previous.charAt(start)) {
+                        start++;
+                    }
+                    int end = buffer.length();
+                    int previousEnd = previous.length();
+                    while (end > start && previousEnd > start
+                            && buffer.charAt(end - 1) == previous.charAt(previousEnd - 1)) {
+                        end--;
+                        previousEnd--;
+                    }
+                    result = ((IncrementalHighlighter) highlighter).highlight(
+                            this, buffer, previous, highlighted, start, previousEnd, end);
+                } else {
+                    result = highlighter.highlight(this, buffer);
+                }
+                highlighted = result;
+                highlightedBy = highlighter;
+                highlightedBuffer = buffer;
+                highlightedSearch = search;
+                highlightedRegion = regionActive;
+                highlightedMark = regionMark;
+                highlightedCursor = cursor;
+                return result;
+            } finally {
+                profiler.exit();
+            }
         }
         return new AttributedString(buffer);
     }
 
+    private ParsedLine parse(String line, int cursor, ParseContext context) throws SyntaxError {
+        profiler.enter(LatencyProfiler.Stage.PARSE);
+        try {
+            return parser.parse(line, cursor, context);
+        } finally {
+            profiler.exit();
+        }
+    }
+
     private AttributedString expandPromptPattern(String pattern, int padToWidth,
                                                  String message, int line) {
         ArrayList<AttributedString> parts = new ArrayList<>();
@@ -3750,66 +4148,85 @@ public class LineReaderImpl implements LineReader, Flushable
     private AttributedString insertSecondaryPrompts(AttributedString strAtt, List<AttributedString> prompts, boolean computePrompts) {
         Objects.requireNonNull(prompts);
         List<AttributedString> lines = strAtt.columnSplitLength(Integer.MAX_VALUE);
+        List<AttributedString> computed = computePrompts ? computeSecondaryPrompts(lines) : null;
         AttributedStringBuilder sb = new AttributedStringBuilder();
-        String secondaryPromptPattern = getString(SECONDARY_PROMPT_PATTERN, DEFAULT_SECONDARY_PROMPT_PATTERN);
-        boolean needsMessage = secondaryPromptPattern.contains("%M");
-        AttributedStringBuilder buf = new AttributedStringBuilder();
-        int width = 0;
-        List<String> missings = new ArrayList<>();
-        if (computePrompts && secondaryPromptPattern.contains("%P")) {
-            width = prompt.columnLength();
-            for (int line = 0; line < lines.size() - 1; line++) {
-                AttributedString prompt;
-                buf.append(lines.get(line)).append("\n");
-                String missing = "";
-                if (needsMessage) {
-                    try {
-                        parser.parse(buf.toString(), buf.length(), ParseContext.SECONDARY_PROMPT);
-                    } catch (EOFError e) {
-                        missing = e.getMissing();
-                    } catch (SyntaxError e) {
-                        // Ignore
-                    }
-                }
-                missings.add(missing);
-                prompt = expandPromptPattern(secondaryPromptPattern, 0, missing, line + 1);
-                width = Math.max(width, prompt.columnLength());
-            }
-            buf.setLength(0);
-        }
         int line = 0;
         while (line < lines.size() - 1) {
             sb.append(lines.get(line)).append("\n");
-            buf.append(lines.get(line)).append("\n");
-            AttributedString prompt;
-            if (computePrompts) {
-                String missing = "";
-                if (needsMessage) {
-                    if (missings.isEmpty()) {
-                        try {
-                            parser.parse(buf.toString(), buf.length(), ParseContext.SECONDARY_PROMPT);
-                        } catch (EOFError e) {
-                            missing = e.getMissing();
-                        } catch (SyntaxError e) {
-                            // Ignore
-                        }
-                    } else {
-                        missing = missings.get(line);
-                    }
-                }
-                prompt = expandPromptPattern(secondaryPromptPattern, width, missing, line + 1);
-            } else {
-                prompt = prompts.get(line);
-            }
+            AttributedString prompt = computePrompts ? computed.get(line) : prompts.get(line);
             prompts.add(prompt);
             sb.append(prompt);
             line++;
         }
         sb.append(lines.get(line));
-        buf.append(lines.get(line));
         return sb.toAttributedString();
     }
 
+    /**
+     * Computes the secondary prompts displayed before the lines following the first one
+     * @param lines the lines of the buffer, without their new line
+     * @return the secondary prompts
+     */
+    private List<AttributedString> computeSecondaryPrompts(List<AttributedString> lines) {
+        String secondaryPromptPattern = getString(SECONDARY_PROMPT_PATTERN, DEFAULT_SECONDARY_PROMPT_PATTERN);
+        List<String> missings = secondaryPromptPattern.contains("%M") ? computeMissings(lines) : null;
+        int width = 0;
+        if (secondaryPromptPattern.contains("%P")) {
+            width = prompt.columnLength();
+            for (int line = 0; line < lines.size() - 1; line++) {
+                String missing = missings != null ? missings.get(line) : "";
+                AttributedString prompt = expandPromptPattern(secondaryPromptPattern, 0, missing, line + 1);
+                width = Math.max(width, prompt.columnLength());
+            }
+        }
+        List<AttributedString> prompts = new ArrayList<>();
+        for (int line = 0; line < lines.size() - 1; line++) {
+            String missing = missings != null ? missings.get(line) : "";
+            prompts.add(expandPromptPattern(secondaryPromptPattern, width, missing, line + 1));
+        }
+        return prompts;
+    }
+
+    /**
+     * Parses each line of the buffer with the previous ones to find what is missing,
+     * reusing the results of the previous call for the unchanged lines at the start.
+     * @param lines the lines of the buffer, without their new line
+     * @return what is missing after each line but the last one
+     */
+    private List<String> computeMissings(List<AttributedString> lines) {
+        int n = lines.size() - 1;
+        if (missingsParser != parser) {
+            missingsLines.clear();
+            missingsParser = parser;
+        }
+        int same = 0;
+        int max = Math.min(n, missingsLines.size());
+        while (same < max && missingsLines.get(same).equals(lines.get(same).toString())) {
+            same++;
+        }
+        missingsLines.subList(same, missingsLines.size()).clear();
+        missings.subList(same, missings.size()).clear();
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < same; line++) {
+            sb.append(missingsLines.get(line)).append("\n");
+        }
+        for (int line = same; line < n; line++) {
+            String text = lines.get(line).toString();
+            sb.append(text).append("\n");
+            String missing = "";
+            try {
+                parse(sb.toString(), sb.length(), ParseContext.SECONDARY_PROMPT);
+            } catch (EOFError e) {
+                missing = e.getMissing();
+            } catch (SyntaxError e) {
+                // Ignore
+            }
+            missingsLines.add(text);
+            missings.add(missing);
+        }
+        return missings;
+    }
+
     private AttributedString addRightPrompt(AttributedString prompt, AttributedString line) {
         int width = prompt.columnLength();
         boolean endsWithNl = line.length() > 0
@@ -3950,7 +4367,7 @@ public class LineReaderImpl implements LineReader, Flushable
         // Parse the command line
         CompletingParsedLine line;
         try {
-            line = wrap(parser.parse(buf.toString(), buf.cursor(), ParseContext.COMPLETE));
+            line = wrap(parse(buf.toString(), buf.cursor(), ParseContext.COMPLETE));
         } catch (Exception e) {
             Log.info("Error while parsing line", e);
             return false;
@@ -3958,8 +4375,33 @@ public class LineReaderImpl implements LineReader, Flushable
 
         // Find completion candidates
         List<Candidate> candidates = new ArrayList<>();
+        partialCompletion = false;
         try {
-            if (completer != null) {
+            if (completer instanceof StreamingCompleter || completer != null && isSet(Option.ASYNC_COMPLETION)) {
+                candidates = completeInBackground(toStreaming(completer), line);
+                if (candidates == null) {
+                    // cancelled by a key press
+                    return true;
+                }
+            } else if (completer instanceof AggregateCompleter) {
+                List<Candidate> result = candidates;
+                ((AggregateCompleter) completer).complete(this, line, new CandidateSink() {
+                    @Override
+                    public void add(Candidate candidate) {
+                        result.add(candidate);
+                    }
+
+                    @Override
+                    public void setPartial() {
+                        partialCompletion = true;
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return false;
+                    }
+                });
+            } else if (completer != null) {
                 completer.complete(this, line, candidates);
             }
         } catch (Exception e) {
@@ -3989,26 +4431,24 @@ public class LineReaderImpl implements LineReader, Flushable
         boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE);
         int errors = getInt(ERRORS, DEFAULT_ERRORS);
 
-        // Build a list of sorted candidates
-        Map<String, List<Candidate>> sortedCandidates = new HashMap<>();
-        for (Candidate cand : candidates) {
-            sortedCandidates
-                    .computeIfAbsent(AttributedString.fromAnsi(cand.value()).toString(), s -> new ArrayList<>())
-                    .add(cand);
+        // Index the candidates, unless the completer returned the same ones
+        CandidateIndex index = candidateIndex;
+        if (index == null || !index.isFor(candidates)) {
+            index = CandidateIndex.build(candidates);
+            candidateIndex = index;
         }
 
         // Find matchers
         // TODO: glob completion
-        List<Function<Map<String, List<Candidate>>,
-                      Map<String, List<Candidate>>>> matchers;
+        List<Function<CandidateIndex, Map<String, List<Candidate>>>> matchers;
         Predicate<String> exact;
         if (prefix) {
             String wd = line.word();
             String wdi = caseInsensitive ? wd.toLowerCase() : wd;
             String wp = wdi.substring(0, line.wordCursor());
             matchers = Arrays.asList(
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).startsWith(wp)),
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).contains(wp)),
+                    prefixMatcher(wp, caseInsensitive),
+                    simpleMatcher(s -> s.contains(wp), caseInsensitive),
                     typoMatcher(wp, errors, caseInsensitive)
             );
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wp) : s.equals(wp);
@@ -4020,8 +4460,8 @@ public class LineReaderImpl implements LineReader, Flushable
             Pattern p1 = Pattern.compile(Pattern.quote(wp) + ".*" + Pattern.quote(ws) + ".*");
             Pattern p2 = Pattern.compile(".*" + Pattern.quote(wp) + ".*" + Pattern.quote(ws) + ".*");
             matchers = Arrays.asList(
-                    simpleMatcher(s -> p1.matcher(caseInsensitive ? s.toLowerCase() : s).matches()),
-                    simpleMatcher(s -> p2.matcher(caseInsensitive ? s.toLowerCase() : s).matches()),
+                    simpleMatcher(s -> p1.matcher(s).matches(), caseInsensitive),
+                    simpleMatcher(s -> p2.matcher(s).matches(), caseInsensitive),
                     typoMatcher(wdi, errors, caseInsensitive)
             );
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wd) : s.equals(wd);
@@ -4029,17 +4469,16 @@ public class LineReaderImpl implements LineReader, Flushable
             String wd = line.word();
             String wdi = caseInsensitive ? wd.toLowerCase() : wd;
             matchers = Arrays.asList(
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).startsWith(wdi)),
-                    simpleMatcher(s -> (caseInsensitive ? s.toLowerCase() : s).contains(wdi)),
+                    prefixMatcher(wdi, caseInsensitive),
+                    simpleMatcher(s -> s.contains(wdi), caseInsensitive),
                     typoMatcher(wdi, errors, caseInsensitive)
             );
             exact = s -> caseInsensitive ? s.equalsIgnoreCase(wd) : s.equals(wd);
         }
         // Find matching candidates
         Map<String, List<Candidate>> matching = Collections.emptyMap();
-        for (Function<Map<String, List<Candidate>>,
-                      Map<String, List<Candidate>>> matcher : matchers) {
-            matching = matcher.apply(sortedCandidates);
+        for (Function<CandidateIndex, Map<String, List<Candidate>>> matcher : matchers) {
+            matching = matcher.apply(index);
             if (!matching.isEmpty()) {
                 break;
             }
@@ -4194,9 +4633,166 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    /**
+     * Adapts the completer to be run in the background, keeping the
+     * partial results reported by an {@link AggregateCompleter}.
+     */
+    private static StreamingCompleter toStreaming(Completer completer) {
+        if (completer instanceof AggregateCompleter) {
+            AggregateCompleter aggregate = (AggregateCompleter) completer;
+            return (reader, line, sink) -> aggregate.complete(reader, line, sink);
+        }
+        return StreamingCompleter.of(completer);
+    }
+
+    /**
+     * Runs the completer in the background, displaying the candidates found so far,
+     * until the completer returns, a key is pressed or the completion times out.
+     * The completion is partial if it timed out or if the completer said so.
+     *
+     * @param completer the completer
+     * @param line the parsed line
+     * @return the candidates, or <code>null</code> if the completion has been
+     *         cancelled by a key press
+     */
+    protected List<Candidate> completeInBackground(StreamingCompleter completer, CompletingParsedLine line) {
+        BackgroundCompletion sink = new BackgroundCompletion();
+        Future<?> future = getCompletionExecutor().submit(() -> {
+            try {
+                completer.complete(this, line, sink);
+            } catch (RuntimeException e) {
+                sink.error = e;
+            } finally {
+                sink.done.countDown();
+            }
+        });
+        long timeout = getLong(COMPLETION_TIMEOUT, DEFAULT_COMPLETION_TIMEOUT);
+        long deadline = System.currentTimeMillis() + timeout;
+        String completed = line.word().substring(0, line.wordCursor());
+        int displayed = 0;
+        try {
+            while (!sink.done.await(COMPLETION_REFRESH, TimeUnit.MILLISECONDS)) {
+                if (bindingReader.peekCharacter(1) >= 0) {
+                    // the key will be read once the completion is cancelled
+                    return null;
+                }
+                if (timeout > 0 && System.currentTimeMillis() >= deadline) {
+                    Log.debug("Completion timed out after ", timeout, " ms");
+                    sink.setPartial();
+                    break;
+                }
+                List<Candidate> partial = sink.candidates();
+                if (partial.size() > displayed) {
+                    displayed = partial.size();
+                    displayPartialCompletion(partial, completed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            sink.cancelled = true;
+            future.cancel(true);
+            if (displayed > 0) {
+                post = null;
+            }
+        }
+        if (sink.error != null) {
+            throw sink.error;
+        }
+        partialCompletion = sink.partial;
+        return sink.candidates();
+    }
+
+    private void displayPartialCompletion(List<Candidate> partial, String completed) {
+        boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE);
+        String completedi = caseInsensitive ? completed.toLowerCase() : completed;
+        List<Candidate> cands = partial.stream()
+                .filter(c -> (caseInsensitive ? c.value().toLowerCase() : c.value()).startsWith(completedi))
+                .collect(Collectors.toList());
+        if (cands.isEmpty()) {
+            return;
+        }
+        sortCandidates(cands, getCandidateComparator(caseInsensitive, completed));
+        AttributedString text = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
+        int promptLines = text.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
+        PostResult pr = computePost(cands, null, null, completed);
+        if (pr.lines < size.getRows() - promptLines) {
+            post = () -> pr.post;
+        } else {
+            post = () -> new AttributedString("Completing: " + cands.size() + " possibilities");
+        }
+        redisplay();
+    }
+
+    /**
+     * The sink of a background completion.
+     */
+    private static class BackgroundCompletion implements CandidateSink {
+        final List<Candidate> candidates = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean cancelled;
+        volatile boolean partial;
+        volatile RuntimeException error;
+
+        @Override
+        public void add(Candidate candidate) {
+            if (!cancelled) {
+                synchronized (candidates) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        @Override
+        public void addAll(Collection<Candidate> candidates) {
+            if (!cancelled) {
+                synchronized (this.candidates) {
+                    this.candidates.addAll(candidates);
+                }
+            }
+        }
+
+        @Override
+        public void setPartial() {
+            partial = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        List<Candidate> candidates() {
+            synchronized (candidates) {
+                return new ArrayList<>(candidates);
+            }
+        }
+    }
+
+    /**
+     * Returns the executor running the background completions,
+     * which by default uses daemon threads.
+     *
+     * @return the executor
+     */
+    protected ExecutorService getCompletionExecutor() {
+        if (completionExecutor == null) {
+            completionExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "JLine completion");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return completionExecutor;
+    }
+
     protected Comparator<Candidate> getCandidateComparator(boolean caseInsensitive, String word) {
         String wdi = caseInsensitive ? word.toLowerCase() : word;
-        ToIntFunction<String> wordDistance = w -> distance(wdi, caseInsensitive ? w.toLowerCase() : w);
+        // the distances are computed once per value rather than on each comparison
+        Map<String, Integer> distances = new ConcurrentHashMap<>();
+        ToIntFunction<String> wordDistance = w -> distances.computeIfAbsent(w,
+                v -> distance(wdi, caseInsensitive ? v.toLowerCase() : v));
         return Comparator
                 .comparing(Candidate::value, Comparator.comparingInt(wordDistance))
                 .thenComparing(Candidate::value, Comparator.comparingInt(String::length))
@@ -4217,6 +4813,23 @@ public class LineReaderImpl implements LineReader, Flushable
                 .thenComparing(String::toLowerCase, Comparator.naturalOrder());
     }
 
+    /**
+     * Sorts the candidates, in parallel for large lists.
+     */
+    private void sortCandidates(List<Candidate> candidates, Comparator<Candidate> comparator) {
+        if (candidates.size() < CandidateIndex.PARALLEL_THRESHOLD) {
+            candidates.sort(comparator);
+            return;
+        }
+        Candidate[] sorted = candidates.toArray(new Candidate[0]);
+        Arrays.parallelSort(sorted, comparator);
+        ListIterator<Candidate> it = candidates.listIterator();
+        for (Candidate candidate : sorted) {
+            it.next();
+            it.set(candidate);
+        }
+    }
+
     private void mergeCandidates(List<Candidate> possible) {
         // Merge candidates if the have the same key
         Map<String, List<Candidate>> keyedCandidates = new HashMap<>();
@@ -4244,22 +4857,22 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
-    private Function<Map<String, List<Candidate>>,
-                     Map<String, List<Candidate>>> simpleMatcher(Predicate<String> pred) {
-        return m -> m.entrySet().stream()
-                .filter(e -> pred.test(e.getKey()))
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    private Function<CandidateIndex, Map<String, List<Candidate>>> prefixMatcher(String prefix, boolean caseInsensitive) {
+        return index -> index.startingWith(prefix, caseInsensitive);
+    }
+
+    private Function<CandidateIndex, Map<String, List<Candidate>>> simpleMatcher(Predicate<String> pred, boolean caseInsensitive) {
+        return index -> index.matching(pred, caseInsensitive);
     }
 
-    private Function<Map<String, List<Candidate>>,
-                     Map<String, List<Candidate>>> typoMatcher(String word, int errors, boolean caseInsensitive) {
-        return m -> {
-            Map<String, List<Candidate>> map = m.entrySet().stream()
-                    .filter(e -> distance(word, caseInsensitive ? e.getKey() : e.getKey().toLowerCase()) < errors)
-                    .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    private Function<CandidateIndex, Map<String, List<Candidate>>> typoMatcher(String word, int errors, boolean caseInsensitive) {
+        return index -> {
+            Map<String, List<Candidate>> map = index.typos(word, errors - 1, caseInsensitive);
             if (map.size() > 1) {
-                map.computeIfAbsent(word, w -> new ArrayList<>())
-                        .add(new Candidate(word, word, getOriginalGroupName(), null, null, null, false));
+                // the lists belong to the index
+                List<Candidate> cands = new ArrayList<>(map.getOrDefault(word, Collections.emptyList()));
+                cands.add(new Candidate(word, word, getOriginalGroupName(), null, null, null, false));
+                map.put(word, cands);
             }
             return map;
         };
@@ -4287,9 +4900,110 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    /**
+     * The layout of the grouped candidates in rows, computed once, so that
+     * any row can be rendered without laying out the other ones.
+     */
+    private class ColumnLayout {
+        final List<Object> items;
+        final int width;
+        final boolean rowsFirst;
+        final int maxWidth;
+        /** The first row of each item */
+        final int[] rowStart;
+        /** The index of the first candidate of each item */
+        final int[] candidateStart;
+        final int[] lines;
+        final int[] columns;
+        final int rows;
+
+        @SuppressWarnings("unchecked")
+        ColumnLayout(List<Object> items, Function<String, Integer> wcwidth, int width, boolean rowsFirst) {
+            this.items = items;
+            this.width = width;
+            this.rowsFirst = rowsFirst;
+            this.maxWidth = Math.min(width, getMaxWidth(items, wcwidth));
+            int n = items.size();
+            rowStart = new int[n];
+            candidateStart = new int[n];
+            lines = new int[n];
+            columns = new int[n];
+            int row = 0;
+            int candidate = 0;
+            for (int i = 0; i < n && maxWidth > 0; i++) {
+                rowStart[i] = row;
+                candidateStart[i] = candidate;
+                Object item = items.get(i);
+                if (item instanceof List) {
+                    int size = ((List<Candidate>) item).size();
+                    lines[i] = getLines(size, width, maxWidth);
+                    columns[i] = (size + lines[i] - 1) / lines[i];
+                    candidate += size;
+                } else {
+                    lines[i] = 1;
+                }
+                row += lines[i];
+            }
+            rows = row;
+        }
+
+        /**
+         * Returns the row displaying the candidate at the given index in display order.
+         */
+        int rowOf(int candidate) {
+            if (rows == 0) {
+                return -1;
+            }
+            // the group names hold no candidate, so the list holding the
+            // candidate is the last item starting at or before it
+            int lo = 0;
+            int hi = items.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (candidateStart[mid] <= candidate) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int i = lo - 1;
+            int local = candidate - candidateStart[i];
+            return rowStart[i] + (rowsFirst ? local / columns[i] : local % lines[i]);
+        }
+
+        /**
+         * Renders the given rows, each one followed by a new line.
+         */
+        @SuppressWarnings("unchecked")
+        AttributedString render(int from, int to, Candidate selection, String completed) {
+            AttributedStringBuilder sb = new AttributedStringBuilder();
+            int i = Arrays.binarySearch(rowStart, 0, rows > 0 ? items.size() : 0, from);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            for (int row = from; row < to && i < items.size(); i++) {
+                Object item = items.get(i);
+                for (; row < to && row < rowStart[i] + lines[i]; row++) {
+                    if (item instanceof List) {
+                        toColumnsRow((List<Candidate>) item, row - rowStart[i], lines[i], columns[i],
+                                maxWidth, rowsFirst, sb, selection, completed);
+                    } else {
+                        sb.style(getCompletionStyleGroup())
+                                .append((String) item)
+                                .style(AttributedStyle.DEFAULT);
+                    }
+                    sb.append('\n');
+                }
+            }
+            return sb.toAttributedString();
+        }
+    }
+
     private class MenuSupport implements Supplier<AttributedString> {
         final List<Candidate> possible;
+        final List<Object> items;
         final BiFunction<CharSequence, Boolean, CharSequence> escaper;
+        ColumnLayout layout;
         int selection;
         int topLine;
         String word;
@@ -4305,7 +5019,7 @@ public class LineReaderImpl implements LineReader, Flushable
             this.topLine = 0;
             this.word = "";
             this.completed = completed;
-            computePost(original, null, possible, completed);
+            this.items = groupCandidates(original, possible, isSet(Option.AUTO_GROUP), isSet(Option.GROUP));
             next();
         }
 
@@ -4404,26 +5118,26 @@ public class LineReaderImpl implements LineReader, Flushable
             word = escaper.apply(completion().value(), true).toString();
             buf.write(word);
 
-            // Compute displayed prompt
-            PostResult pr = computePost(possible, completion(), null, completed);
+            // Compute displayed prompt, only rendering the visible rows
+            if (layout == null || layout.width != size.getColumns()) {
+                layout = new ColumnLayout(items, display::wcwidth, size.getColumns(), isSet(Option.LIST_ROWS_FIRST));
+            }
+            int selectedLine = layout.rowOf(selection);
             AttributedString text = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
             int promptLines = text.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
-            if (pr.lines > size.getRows() - promptLines) {
-                int displayed = size.getRows() - promptLines - 1;
-                if (pr.selectedLine >= 0) {
-                    if (pr.selectedLine < topLine) {
-                        topLine = pr.selectedLine;
-                    } else if (pr.selectedLine >= topLine + displayed) {
-                        topLine = pr.selectedLine - displayed + 1;
+            if (layout.rows > size.getRows() - promptLines) {
+                int displayed = Math.max(1, size.getRows() - promptLines - 1);
+                if (selectedLine >= 0) {
+                    if (selectedLine < topLine) {
+                        topLine = selectedLine;
+                    } else if (selectedLine >= topLine + displayed) {
+                        topLine = selectedLine - displayed + 1;
                     }
                 }
-                AttributedString post = pr.post;
-                if (post.length() > 0 && post.charAt(post.length() - 1) != '\n') {
-                    post = new AttributedStringBuilder(post.length() + 1)
-                            .append(post).append("\n").toAttributedString();
-                }
+                topLine = Math.max(0, Math.min(topLine, layout.rows - displayed));
+                AttributedString post = layout.render(topLine, topLine + displayed, completion(), completed);
                 List<AttributedString> lines = post.columnSplitLength(size.getColumns(), true, display.delayLineWrap());
-                List<AttributedString> sub = new ArrayList<>(lines.subList(topLine, topLine + displayed));
+                List<AttributedString> sub = new ArrayList<>(lines.subList(0, Math.min(displayed, lines.size())));
                 sub.add(new AttributedStringBuilder()
                         .style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN))
                         .append("rows ")
@@ -4431,14 +5145,15 @@ public class LineReaderImpl implements LineReader, Flushable
                         .append(" to ")
                         .append(Integer.toString(topLine + displayed))
                         .append(" of ")
-                        .append(Integer.toString(lines.size()))
+                        .append(Integer.toString(layout.rows))
                         .append("\n")
                         .style(AttributedStyle.DEFAULT).toAttributedString());
                 computed = AttributedString.join(AttributedString.EMPTY, sub);
             } else {
-                computed = pr.post;
+                AttributedString post = layout.render(0, layout.rows, completion(), completed);
+                computed = post.length() > 0 ? post.subSequence(0, post.length() - 1) : post;
             }
-            lines = pr.lines;
+            lines = Math.max(1, layout.rows);
             columns = (possible.size() + lines - 1) / lines;
         }
 
@@ -4451,11 +5166,9 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected boolean doMenu(List<Candidate> original, String completed, BiFunction<CharSequence, Boolean, CharSequence> escaper) {
         // Reorder candidates according to display order
-        final List<Candidate> possible = new ArrayList<>();
         boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE);
-        original.sort(getCandidateComparator(caseInsensitive, completed));
+        sortCandidates(original, getCandidateComparator(caseInsensitive, completed));
         mergeCandidates(original);
-        computePost(original, null, possible, completed);
 
         // Build menu support
         MenuSupport menuSupport = new MenuSupport(original, completed, escaper);
@@ -4551,17 +5264,16 @@ public class LineReaderImpl implements LineReader, Flushable
             String current = completed + sb.toString();
             List<Candidate> cands;
             if (sb.length() > 0) {
+                String currenti = current.toLowerCase();
                 cands = possible.stream()
                         .filter(c -> caseInsensitive
-                                    ? c.value().toLowerCase().startsWith(current.toLowerCase())
+                                    ? c.value().toLowerCase().startsWith(currenti)
                                     : c.value().startsWith(current))
-                        .sorted(getCandidateComparator(caseInsensitive, current))
                         .collect(Collectors.toList());
             } else {
-                cands = possible.stream()
-                        .sorted(getCandidateComparator(caseInsensitive, current))
-                        .collect(Collectors.toList());
+                cands = new ArrayList<>(possible);
             }
+            sortCandidates(cands, getCandidateComparator(caseInsensitive, current));
             post = () -> {
                 AttributedString t = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
                 int pl = t.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
@@ -4587,7 +5299,7 @@ public class LineReaderImpl implements LineReader, Flushable
             }
             redisplay();
             // TODO: use a different keyMap ?
-            Binding b = bindingReader.readBinding(getKeys());
+            Binding b = doReadBinding(getKeys(), null);
             if (b instanceof Reference) {
                 String name = ((Reference) b).name();
                 if (BACKWARD_DELETE_CHAR.equals(name) || VI_BACKWARD_DELETE_CHAR.equals(name)) {
@@ -4640,10 +5352,31 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     protected PostResult computePost(List<Candidate> possible, Candidate selection, List<Candidate> ordered, String completed) {
-        return computePost(possible, selection, ordered, completed, display::wcwidth, size.getColumns(), isSet(Option.AUTO_GROUP), isSet(Option.GROUP), isSet(Option.LIST_ROWS_FIRST));
+        PostResult pr = computePost(possible, selection, ordered, completed, display::wcwidth, size.getColumns(), isSet(Option.AUTO_GROUP), isSet(Option.GROUP), isSet(Option.LIST_ROWS_FIRST));
+        if (partialCompletion && pr.lines > 0) {
+            // Some completers did not finish in time
+            AttributedString post = new AttributedStringBuilder()
+                    .append(pr.post)
+                    .append("\n")
+                    .style(getCompletionStyleDescription())
+                    .append("(partial)")
+                    .toAttributedString();
+            return new PostResult(post, pr.lines + 1, pr.selectedLine);
+        }
+        return pr;
     }
 
     protected PostResult computePost(List<Candidate> possible, Candidate selection, List<Candidate> ordered, String completed, Function<String, Integer> wcwidth, int width, boolean autoGroup, boolean groupName, boolean rowsFirst) {
+        List<Object> strings = groupCandidates(possible, ordered, autoGroup, groupName);
+        return toColumns(strings, selection, completed, wcwidth, width, rowsFirst);
+    }
+
+    /**
+     * Groups the candidates in display order.
+     *
+     * @return the group names and the lists of candidates to display
+     */
+    private List<Object> groupCandidates(List<Candidate> possible, List<Candidate> ordered, boolean autoGroup, boolean groupName) {
         List<Object> strings = new ArrayList<>();
         if (groupName) {
             Comparator<String> groupComparator = getGroupComparator();
@@ -4687,7 +5420,7 @@ public class LineReaderImpl implements LineReader, Flushable
                 ordered.addAll(sorted.values());
             }
         }
-        return toColumns(strings, selection, completed, wcwidth, width, rowsFirst);
+        return strings;
     }
 
     private static final String DESC_PREFIX = "(";
@@ -4695,11 +5428,27 @@ public class LineReaderImpl implements LineReader, Flushable
     private static final int MARGIN_BETWEEN_DISPLAY_AND_DESC = 1;
     private static final int MARGIN_BETWEEN_COLUMNS = 3;
 
-    @SuppressWarnings("unchecked")
     protected PostResult toColumns(List<Object> items, Candidate selection, String completed, Function<String, Integer> wcwidth, int width, boolean rowsFirst) {
         int[] out = new int[2];
         // TODO: support Option.LIST_PACKED
-        // Compute column width
+        int maxWidth = getMaxWidth(items, wcwidth);
+        // Build columns
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        for (Object list : items) {
+            toColumns(list, width, maxWidth, sb, selection, completed, rowsFirst, out);
+        }
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
+            sb.setLength(sb.length() - 1);
+        }
+        return new PostResult(sb.toAttributedString(), out[0], out[1]);
+    }
+
+    /**
+     * Computes the column width, which is the width of the widest candidate
+     * with its description.
+     */
+    @SuppressWarnings("unchecked")
+    private int getMaxWidth(List<Object> items, Function<String, Integer> wcwidth) {
         int maxWidth = 0;
         for (Object item : items) {
             if (item instanceof String) {
@@ -4719,15 +5468,18 @@ public class LineReaderImpl implements LineReader, Flushable
                 }
             }
         }
-        // Build columns
-        AttributedStringBuilder sb = new AttributedStringBuilder();
-        for (Object list : items) {
-            toColumns(list, width, maxWidth, sb, selection, completed, rowsFirst, out);
-        }
-        if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
-            sb.setLength(sb.length() - 1);
+        return maxWidth;
+    }
+
+    /**
+     * The number of lines used to display the given number of candidates.
+     */
+    private static int getLines(int size, int width, int maxWidth) {
+        int c = width / maxWidth;
+        while (c > 1 && c * maxWidth + (c - 1) * MARGIN_BETWEEN_COLUMNS >= width) {
+            c--;
         }
-        return new PostResult(sb.toAttributedString(), out[0], out[1]);
+        return (size + c - 1) / c;
     }
 
     @SuppressWarnings("unchecked")
@@ -4747,87 +5499,13 @@ public class LineReaderImpl implements LineReader, Flushable
         else if (items instanceof List) {
             List<Candidate> candidates = (List<Candidate>) items;
             maxWidth = Math.min(width, maxWidth);
-            int c = width / maxWidth;
-            while (c > 1 && c * maxWidth + (c - 1) * MARGIN_BETWEEN_COLUMNS >= width) {
-                c--;
-            }
-            int lines = (candidates.size() + c - 1) / c;
+            int lines = getLines(candidates.size(), width, maxWidth);
             // Try to minimize the number of columns for the given number of rows
             // Prevents eg 9 candiates being split 6/3 instead of 5/4.
-            final int columns = (candidates.size() + lines - 1) / lines;
-            IntBinaryOperator index;
-            if (rowsFirst) {
-                index = (i, j) -> i * columns + j;
-            } else {
-                index = (i, j) -> j * lines + i;
-            }
+            int columns = (candidates.size() + lines - 1) / lines;
             for (int i = 0; i < lines; i++) {
-                for (int j = 0; j < columns; j++) {
-                    int idx = index.applyAsInt(i, j);
-                    if (idx < candidates.size()) {
-                        Candidate cand = candidates.get(idx);
-                        boolean hasRightItem = j < columns - 1 && index.applyAsInt(i, j + 1) < candidates.size();
-                        AttributedString left = AttributedString.fromAnsi(cand.displ());
-                        AttributedString right = AttributedString.fromAnsi(cand.descr());
-                        int lw = left.columnLength();
-                        int rw = 0;
-                        if (right != null) {
-                            int rem = maxWidth - (lw + MARGIN_BETWEEN_DISPLAY_AND_DESC
-                                    + DESC_PREFIX.length() + DESC_SUFFIX.length());
-                            rw = right.columnLength();
-                            if (rw > rem) {
-                                right = AttributedStringBuilder.append(
-                                            right.columnSubSequence(0, rem - WCWidth.wcwidth('…')),
-                                            "…");
-                                rw = right.columnLength();
-                            }
-                            right = AttributedStringBuilder.append(DESC_PREFIX, right, DESC_SUFFIX);
-                            rw += DESC_PREFIX.length() + DESC_SUFFIX.length();
-                        }
-                        if (cand == selection) {
-                            out[1] = i;
-                            sb.style(getCompletionStyleSelection());
-                            if (left.toString().regionMatches(
-                                    isSet(Option.CASE_INSENSITIVE), 0, completed, 0, completed.length())) {
-                                sb.append(left.toString(), 0, completed.length());
-                                sb.append(left.toString(), completed.length(), left.length());
-                            } else {
-                                sb.append(left.toString());
-                            }
-                            for (int k = 0; k < maxWidth - lw - rw; k++) {
-                                sb.append(' ');
-                            }
-                            if (right != null) {
-                                sb.append(right);
-                            }
-                            sb.style(AttributedStyle.DEFAULT);
-                        } else {
-                            if (left.toString().regionMatches(
-                                    isSet(Option.CASE_INSENSITIVE), 0, completed, 0, completed.length())) {
-                                sb.style(getCompletionStyleStarting());
-                                sb.append(left, 0, completed.length());
-                                sb.style(AttributedStyle.DEFAULT);
-                                sb.append(left, completed.length(), left.length());
-                            } else {
-                                sb.append(left);
-                            }
-                            if (right != null || hasRightItem) {
-                                for (int k = 0; k < maxWidth - lw - rw; k++) {
-                                    sb.append(' ');
-                                }
-                            }
-                            if (right != null) {
-                                sb.style(getCompletionStyleDescription());
-                                sb.append(right);
-                                sb.style(AttributedStyle.DEFAULT);
-                            }
-                        }
-                        if (hasRightItem) {
-                            for (int k = 0; k < MARGIN_BETWEEN_COLUMNS; k++) {
-                                sb.append(' ');
-                            }
-                        }
-                    }
+                if (toColumnsRow(candidates, i, lines, columns, maxWidth, rowsFirst, sb, selection, completed)) {
+                    out[1] = out[0] + i;
                 }
                 sb.append('\n');
             }
@@ -4835,6 +5513,90 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    /**
+     * Appends a row of candidates, without the trailing new line.
+     *
+     * @return whether the row contains the selection
+     */
+    private boolean toColumnsRow(List<Candidate> candidates, int i, int lines, int columns, int maxWidth, boolean rowsFirst,
+                                 AttributedStringBuilder sb, Candidate selection, String completed) {
+        IntBinaryOperator index;
+        if (rowsFirst) {
+            index = (r, c) -> r * columns + c;
+        } else {
+            index = (r, c) -> c * lines + r;
+        }
+        boolean selected = false;
+        for (int j = 0; j < columns; j++) {
+            int idx = index.applyAsInt(i, j);
+            if (idx < candidates.size()) {
+                Candidate cand = candidates.get(idx);
+                boolean hasRightItem = j < columns - 1 && index.applyAsInt(i, j + 1) < candidates.size();
+                AttributedString left = AttributedString.fromAnsi(cand.displ());
+                AttributedString right = AttributedString.fromAnsi(cand.descr());
+                int lw = left.columnLength();
+                int rw = 0;
+                if (right != null) {
+                    int rem = maxWidth - (lw + MARGIN_BETWEEN_DISPLAY_AND_DESC
+                            + DESC_PREFIX.length() + DESC_SUFFIX.length());
+                    rw = right.columnLength();
+                    if (rw > rem) {
+                        right = AttributedStringBuilder.append(
+                                    right.columnSubSequence(0, rem - WCWidth.wcwidth('…')),
+                                    "…");
+                        rw = right.columnLength();
+                    }
+                    right = AttributedStringBuilder.append(DESC_PREFIX, right, DESC_SUFFIX);
+                    rw += DESC_PREFIX.length() + DESC_SUFFIX.length();
+                }
+                if (cand == selection) {
+                    selected = true;
+                    sb.style(getCompletionStyleSelection());
+                    if (left.toString().regionMatches(
+                            isSet(Option.CASE_INSENSITIVE), 0, completed, 0, completed.length())) {
+                        sb.append(left.toString(), 0, completed.length());
+                        sb.append(left.toString(), completed.length(), left.length());
+                    } else {
+                        sb.append(left.toString());
+                    }
+                    for (int k = 0; k < maxWidth - lw - rw; k++) {
+                        sb.append(' ');
+                    }
+                    if (right != null) {
+                        sb.append(right);
+                    }
+                    sb.style(AttributedStyle.DEFAULT);
+                } else {
+                    if (left.toString().regionMatches(
+                            isSet(Option.CASE_INSENSITIVE), 0, completed, 0, completed.length())) {
+                        sb.style(getCompletionStyleStarting());
+                        sb.append(left, 0, completed.length());
+                        sb.style(AttributedStyle.DEFAULT);
+                        sb.append(left, completed.length(), left.length());
+                    } else {
+                        sb.append(left);
+                    }
+                    if (right != null || hasRightItem) {
+                        for (int k = 0; k < maxWidth - lw - rw; k++) {
+                            sb.append(' ');
+                        }
+                    }
+                    if (right != null) {
+                        sb.style(getCompletionStyleDescription());
+                        sb.append(right);
+                        sb.style(AttributedStyle.DEFAULT);
+                    }
+                }
+                if (hasRightItem) {
+                    for (int k = 0; k < MARGIN_BETWEEN_COLUMNS; k++) {
+                        sb.append(' ');
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
     private AttributedStyle getCompletionStyleStarting() {
         return getCompletionStyle(COMPLETION_STYLE_STARTING, DEFAULT_COMPLETION_STYLE_STARTING);
     }
@@ -5189,7 +5951,7 @@ public class LineReaderImpl implements LineReader, Flushable
         keyMap.bind(END_PASTE, BRACKETED_PASTE_END);
         StringBuilder sb = new StringBuilder();
         while (true) {
-            Object b = bindingReader.readBinding(keyMap);
+            Object b = doReadBinding(keyMap, null);
             if (b == END_PASTE) {
                 break;
             }
@@ -5658,7 +6420,7 @@ public class LineReaderImpl implements LineReader, Flushable
         bind(map, DELETE_CHAR,          key(Capability.key_dc));
         bind(map, KILL_WHOLE_LINE,      key(Capability.key_dl));
         bind(map, OVERWRITE_MODE,       key(Capability.key_ic));
-        bind(map, MOUSE,                key(Capability.key_mouse));
+        bind(map, MOUSE,                MouseSupport.keys(terminal));
         bind(map, BEGIN_PASTE,          BRACKETED_PASTE_BEGIN);
         bind(map, FOCUS_IN,             FOCUS_IN_SEQ);
         bind(map, FOCUS_OUT,            FOCUS_OUT_SEQ);
@@ -13,29 +13,127 @@ import java.util.function.Consumer;
 /**
  * Simple undo tree.
  * Note that the first added state can't be undone
+ * <p>
+ * When created with a {@link Differ}, only the current state is kept, along
+ * with the differences between the successive states, and the oldest states
+ * are dropped once these differences use more than the memory budget.
  */
 public class UndoTree<T> {
 
+    /**
+     * Computes the difference between two states.
+     */
+    public interface Differ<T> {
+
+        /**
+         * Computes the difference between two states.
+         *
+         * @param from the previous state
+         * @param to the next state
+         * @return the difference
+         */
+        Diff<T> diff(T from, T to);
+
+    }
+
+    /**
+     * The difference between two states.
+     */
+    public interface Diff<T> {
+
+        /**
+         * Returns the next state.
+         *
+         * @param from the previous state, which must not be modified
+         * @return the next state
+         */
+        T apply(T from);
+
+        /**
+         * Returns the previous state.
+         *
+         * @param to the next state, which must not be modified
+         * @return the previous state
+         */
+        T revert(T to);
+
+        /**
+         * Returns the approximate memory used by this difference.
+         *
+         * @return the size in bytes
+         */
+        long size();
+
+    }
+
     private final Consumer<T> state;
+    private final Differ<T> differ;
     private final Node parent;
     private Node current;
+    private T currentState;
+    private long maxSize = Long.MAX_VALUE;
+    private long size;
 
     public UndoTree(Consumer<T> s) {
+        this(s, null);
+    }
+
+    public UndoTree(Consumer<T> s, Differ<T> differ) {
         state = s;
+        this.differ = differ;
         parent = new Node(null);
         parent.left = parent;
         clear();
     }
 
+    /**
+     * Sets the memory budget of the differences, the oldest states being dropped
+     * when it is exceeded.  This is only used when the tree has a {@link Differ}.
+     *
+     * @param maxSize the maximum size in bytes, negative values being treated as <code>0</code>
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        trim();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the approximate memory used by the differences.
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
     public void clear() {
         current = parent;
+        parent.right = null;
+        currentState = null;
+        size = 0;
     }
 
     public void newState(T state) {
-        Node node = new Node(state);
+        Node node;
+        if (differ != null && current != parent) {
+            for (Node n = current.right; n != null; n = n.right) {
+                size -= n.diff.size();
+            }
+            node = new Node(null);
+            node.diff = differ.diff(currentState, state);
+            size += node.diff.size();
+        } else {
+            node = new Node(differ != null ? null : state);
+        }
         current.right = node;
         node.left = current;
         current = node;
+        currentState = state;
+        trim();
     }
 
     public boolean canUndo() {
@@ -50,8 +148,14 @@ public class UndoTree<T> {
         if (!canUndo()) {
             throw new IllegalStateException("Cannot undo.");
         }
-        current = current.left;
-        state.accept(current.state);
+        if (differ != null) {
+            currentState = current.diff.revert(currentState);
+            current = current.left;
+        } else {
+            current = current.left;
+            currentState = current.state;
+        }
+        state.accept(currentState);
     }
 
     public void redo() {
@@ -59,11 +163,36 @@ public class UndoTree<T> {
             throw new IllegalStateException("Cannot redo.");
         }
         current = current.right;
-        state.accept(current.state);
+        currentState = differ != null ? current.diff.apply(currentState) : current.state;
+        state.accept(currentState);
+    }
+
+    private void trim() {
+        if (differ == null) {
+            return;
+        }
+        // drop the oldest states first
+        while (size > maxSize && parent.right != null && parent.right != current) {
+            Node first = parent.right.right;
+            size -= first.diff.size();
+            first.diff = null;
+            first.left = parent;
+            parent.right = first;
+        }
+        // then the last states which can be redone
+        while (size > maxSize && current.right != null) {
+            Node last = current.right;
+            while (last.right != null) {
+                last = last.right;
+            }
+            size -= last.diff.size();
+            last.left.right = null;
+        }
     }
 
     private class Node {
         private final T state;
+        private Diff<T> diff;
         private Node left = null;
         private Node right = null;
 
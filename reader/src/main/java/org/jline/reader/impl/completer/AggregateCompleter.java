@@ -8,19 +8,33 @@
  */
 package org.jline.reader.impl.completer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jline.reader.Candidate;
+import org.jline.reader.CandidateSink;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.ParsedLine;
+import org.jline.utils.Log;
 
 /**
  * Completer which contains multiple completers and aggregates them together.
  *
+ * If an executor is set, the completers are run concurrently and the
+ * completion only waits for them until the timeout elapses, the candidates
+ * of the completers which did not finish in time being dropped.  Whether
+ * some candidates are missing is reported to the {@link CandidateSink}
+ * given to {@link #complete(LineReader, ParsedLine, CandidateSink)}.
+ *
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
  * @since 2.3
  */
@@ -29,6 +43,10 @@ public class AggregateCompleter
 {
     private final Collection<Completer> completers;
 
+    private Executor executor;
+
+    private long timeout;
+
     /**
      * Construct an AggregateCompleter with the given completers.
      * The completers will be used in the order given.
@@ -59,18 +77,157 @@ public class AggregateCompleter
         return completers;
     }
 
+    /**
+     * Sets the executor used to run the aggregated completers concurrently,
+     * or <code>null</code> to run them one after the other on the calling thread.
+     *
+     * @param executor the executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets how long, in milliseconds, the completion waits for the completers
+     * when they are run concurrently.  There is no timeout if <code>0</code>.
+     *
+     * @param timeout the timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
     /**
      * Perform a completion operation across all aggregated completers.
      *
      * The effect is similar to the following code:
      * <blockquote><pre>{@code completers.forEach(c -> c.complete(reader, line, candidates));}</pre></blockquote>
      *
+     * When an executor is set, the completers are run concurrently, and their
+     * candidates are added in the order of the completers once they all
+     * finished or the timeout elapsed.
+     *
      * @see Completer#complete(LineReader, ParsedLine, List)
      */
     public void complete(LineReader reader, final ParsedLine line, final List<Candidate> candidates) {
         Objects.requireNonNull(line);
         Objects.requireNonNull(candidates);
-        completers.forEach(c -> c.complete(reader, line, candidates));
+        if (executor == null) {
+            completers.forEach(c -> c.complete(reader, line, candidates));
+            return;
+        }
+        completeConcurrently(reader, line, new CandidateSink() {
+            @Override
+            public void add(Candidate candidate) {
+                candidates.add(candidate);
+            }
+
+            @Override
+            public void addAll(Collection<Candidate> c) {
+                candidates.addAll(c);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Perform a completion operation across all aggregated completers,
+     * adding the candidates to the given sink.  When some completers did not
+     * finish before the timeout, {@link CandidateSink#setPartial()} is called.
+     *
+     * @param reader the line reader
+     * @param line the parsed command line
+     * @param sink the sink receiving the candidates
+     * @see #complete(LineReader, ParsedLine, List)
+     */
+    public void complete(LineReader reader, ParsedLine line, CandidateSink sink) {
+        Objects.requireNonNull(line);
+        Objects.requireNonNull(sink);
+        if (executor == null) {
+            List<Candidate> candidates = new ArrayList<>();
+            completers.forEach(c -> c.complete(reader, line, candidates));
+            sink.addAll(candidates);
+        } else {
+            completeConcurrently(reader, line, sink);
+        }
+    }
+
+    private void completeConcurrently(LineReader reader, ParsedLine line, CandidateSink sink) {
+        int n = completers.size();
+        AtomicReferenceArray<List<Candidate>> results = new AtomicReferenceArray<>(n);
+        AtomicReferenceArray<RuntimeException> errors = new AtomicReferenceArray<>(n);
+        CountDownLatch done = new CountDownLatch(n);
+        List<FutureTask<Void>> tasks = new ArrayList<>(n);
+        int i = 0;
+        for (Completer completer : completers) {
+            int index = i++;
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                try {
+                    List<Candidate> result = new ArrayList<>();
+                    completer.complete(reader, line, result);
+                    results.set(index, result);
+                } catch (RuntimeException e) {
+                    errors.set(index, e);
+                } finally {
+                    done.countDown();
+                }
+            }, null);
+            tasks.add(task);
+            executor.execute(task);
+        }
+        boolean finished;
+        try {
+            if (timeout > 0) {
+                finished = done.await(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                done.await();
+                finished = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        // Collect the results before interrupting the late completers
+        List<List<Candidate>> collected = new ArrayList<>(n);
+        RuntimeException error = null;
+        for (i = 0; i < n; i++) {
+            collected.add(results.get(i));
+            if (error == null) {
+                error = errors.get(i);
+            }
+        }
+        for (FutureTask<Void> task : tasks) {
+            task.cancel(true);
+        }
+        if (error != null) {
+            throw error;
+        }
+        boolean missing = false;
+        for (List<Candidate> result : collected) {
+            if (result != null) {
+                sink.addAll(result);
+            } else {
+                missing = true;
+            }
+        }
+        if (!finished) {
+            Log.debug("Completers timed out after ", timeout, " ms");
+        }
+        if (missing) {
+            sink.setPartial();
+        }
     }
 
     /**
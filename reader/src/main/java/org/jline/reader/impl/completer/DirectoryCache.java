@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.completer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jline.utils.Log;
+
+/**
+ * A bounded cache of directory listings, shared by the file name completers.
+ *
+ * The entries of a directory are listed with their attributes, which are read
+ * once for each entry.  The listings are invalidated when a change is reported
+ * by a {@link WatchService} on the directory, or when they are older than the
+ * time to live if the directory can not be watched, and the least recently used
+ * listings are evicted.  At most a given number of entries are listed for a
+ * directory: when a listing is truncated, the entries starting with the word
+ * being completed are listed instead, without being cached.
+ */
+public class DirectoryCache {
+
+    public static final int DEFAULT_MAX_DIRECTORIES = 64;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = 2000L;
+
+    private static DirectoryCache defaultCache;
+
+    /**
+     * A directory entry.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final String name;
+        private final boolean directory;
+        private final boolean symbolicLink;
+        private final boolean hidden;
+
+        Entry(Path path, boolean directory, boolean symbolicLink, boolean hidden) {
+            this.path = path;
+            this.name = path.getFileName().toString();
+            this.directory = directory;
+            this.symbolicLink = symbolicLink;
+            this.hidden = hidden;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Whether the entry is a directory, or a link to a directory.
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public boolean isSymbolicLink() {
+            return symbolicLink;
+        }
+
+        /**
+         * Whether the entry is hidden, as returned by {@link Files#isHidden(Path)}.
+         */
+        public boolean isHidden() {
+            return hidden;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class Listing {
+        final long time = System.currentTimeMillis();
+        List<Entry> entries;
+        boolean truncated;
+        WatchKey key;
+        volatile boolean valid = true;
+    }
+
+    private final int maxDirectories;
+    private final int maxEntries;
+    private final long timeToLive;
+    private final boolean watch;
+    private final Map<Path, Listing> listings;
+    private final Map<WatchKey, Listing> watched = new HashMap<>();
+    private WatchService watcher;
+    private FileSystem watchedFileSystem;
+
+    /**
+     * Returns the cache shared by the file name completers.
+     *
+     * @return the shared cache
+     */
+    public static synchronized DirectoryCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new DirectoryCache(DEFAULT_MAX_DIRECTORIES, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, true);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Creates a directory cache.
+     *
+     * @param maxDirectories the maximum number of cached listings
+     * @param maxEntries the maximum number of entries listed for a directory
+     * @param timeToLive how long, in milliseconds, the listings of the unwatched directories are kept
+     * @param watch whether to watch the directories for changes
+     */
+    public DirectoryCache(int maxDirectories, int maxEntries, long timeToLive, boolean watch) {
+        this.maxDirectories = maxDirectories;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.watch = watch;
+        this.listings = new LinkedHashMap<Path, Listing>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+                if (size() > DirectoryCache.this.maxDirectories) {
+                    unwatch(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the entries of the given directory.  If the directory has too
+     * many entries, only the ones whose name starts with the given prefix are
+     * listed, up to the maximum number of entries.
+     *
+     * @param dir the directory
+     * @param prefix the prefix of the names, used for the large directories
+     * @return the unmodifiable list of entries, which are not sorted
+     * @throws IOException if the directory can not be listed
+     */
+    public List<Entry> list(Path dir, String prefix) throws IOException {
+        return list(dir, prefix, false);
+    }
+
+    /**
+     * Returns the entries of the given directory.  If the directory has too
+     * many entries, only the ones whose name starts with the given prefix are
+     * listed, up to the maximum number of entries.
+     *
+     * @param dir the directory
+     * @param prefix the prefix of the names, used for the large directories
+     * @param caseInsensitive whether the prefix is matched ignoring the case
+     * @return the unmodifiable list of entries, which are not sorted
+     * @throws IOException if the directory can not be listed
+     */
+    public List<Entry> list(Path dir, String prefix, boolean caseInsensitive) throws IOException {
+        Path key = dir.toAbsolutePath().normalize();
+        Listing listing;
+        synchronized (this) {
+            listing = listings.get(key);
+            if (listing != null && !isValid(listing)) {
+                unwatch(listings.remove(key));
+                listing = null;
+            }
+        }
+        if (listing == null) {
+            listing = new Listing();
+            if (watch) {
+                // watch before listing, so that no change is missed
+                watch(key, listing);
+            }
+            try {
+                read(key, "", false, listing);
+            } catch (IOException | RuntimeException e) {
+                unwatch(listing);
+                throw e;
+            }
+            synchronized (this) {
+                unwatch(listings.put(key, listing));
+            }
+        }
+        if (listing.truncated && !prefix.isEmpty()) {
+            Listing filtered = new Listing();
+            read(key, prefix, caseInsensitive, filtered);
+            return filtered.entries;
+        }
+        return listing.entries;
+    }
+
+    /**
+     * Discards the listing of the given directory.
+     *
+     * @param dir the directory
+     */
+    public synchronized void invalidate(Path dir) {
+        unwatch(listings.remove(dir.toAbsolutePath().normalize()));
+    }
+
+    /**
+     * Discards all the listings.
+     */
+    public synchronized void clear() {
+        listings.values().forEach(this::unwatch);
+        listings.clear();
+    }
+
+    private boolean isValid(Listing listing) {
+        return listing.valid
+                && (listing.key != null || System.currentTimeMillis() - listing.time < timeToLive);
+    }
+
+    private void read(Path dir, String prefix, boolean caseInsensitive, Listing listing) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        boolean truncated = false;
+        DirectoryStream.Filter<Path> filter = p -> p.getFileName().toString()
+                .regionMatches(caseInsensitive, 0, prefix, 0, prefix.length());
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, filter)) {
+            for (Path path : stream) {
+                if (entries.size() >= maxEntries) {
+                    truncated = true;
+                    break;
+                }
+                entries.add(entry(path));
+            }
+        }
+        listing.entries = Collections.unmodifiableList(entries);
+        listing.truncated = truncated;
+    }
+
+    private static Entry entry(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            boolean directory = attrs.isDirectory();
+            if (attrs.isSymbolicLink()) {
+                try {
+                    directory = Files.readAttributes(path, BasicFileAttributes.class).isDirectory();
+                } catch (IOException e) {
+                    // broken link
+                }
+            }
+            return new Entry(path, directory, attrs.isSymbolicLink(), Files.isHidden(path));
+        } catch (IOException e) {
+            // the entry has been removed in the mean time
+            return new Entry(path, false, false, true);
+        }
+    }
+
+    private void watch(Path dir, Listing listing) {
+        try {
+            WatchService service = getWatcher(dir.getFileSystem());
+            if (service != null) {
+                WatchKey key = dir.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                synchronized (this) {
+                    Listing previous = watched.put(key, listing);
+                    if (previous != null) {
+                        // the key is shared by all the registrations of the directory
+                        previous.valid = false;
+                        previous.key = null;
+                    }
+                    listing.key = key;
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            Log.debug("Unable to watch directory ", dir, ": ", e);
+        }
+    }
+
+    private synchronized void unwatch(Listing listing) {
+        if (listing != null && listing.key != null) {
+            if (watched.get(listing.key) == listing) {
+                watched.remove(listing.key);
+                listing.key.cancel();
+            }
+            listing.key = null;
+        }
+    }
+
+    private synchronized WatchService getWatcher(FileSystem fileSystem) throws IOException {
+        if (watcher == null) {
+            WatchService service = fileSystem.newWatchService();
+            if (service.getClass().getName().endsWith("PollingWatchService")) {
+                // changes are only seen every few seconds, rely on the time to live
+                service.close();
+                return null;
+            }
+            watcher = service;
+            watchedFileSystem = fileSystem;
+            Thread thread = new Thread(this::processEvents, "JLine directory cache");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return fileSystem == watchedFileSystem ? watcher : null;
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                // any event, including an overflow, discards the listing
+                key.pollEvents();
+                synchronized (this) {
+                    Listing listing = watched.remove(key);
+                    if (listing != null) {
+                        listing.valid = false;
+                        listing.key = null;
+                    }
+                    key.cancel();
+                    // remove the discarded listings eagerly
+                    Iterator<Listing> it = listings.values().iterator();
+                    while (it.hasNext()) {
+                        if (!it.next().valid) {
+                            it.remove();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // exit
+        }
+    }
+
+}
@@ -46,7 +46,6 @@ import org.jline.utils.AttributedStyle;
 @Deprecated
 public class FileNameCompleter implements Completer
 {
-
     public void complete(LineReader reader, ParsedLine commandLine, final List<Candidate> candidates) {
         assert commandLine != null;
         assert candidates != null;
@@ -73,26 +72,40 @@ public class FileNameCompleter implements Completer
             current = getUserDir();
         }
         try {
-            Files.newDirectoryStream(current, this::accept).forEach(p -> {
-                String value = curBuf + p.getFileName().toString();
-                if (Files.isDirectory(p)) {
+            String prefix = buffer.substring(curBuf.length());
+            for (DirectoryCache.Entry entry : getDirectoryCache().list(current, prefix, reader.isSet(Option.CASE_INSENSITIVE))) {
+                if (!accept(entry)) {
+                    continue;
+                }
+                String value = curBuf + entry.name();
+                if (entry.isDirectory()) {
                     candidates.add(new Candidate(
                             value + (reader.isSet(Option.AUTO_PARAM_SLASH) ? sep : ""),
-                            getDisplay(reader.getTerminal(), p),
+                            getDisplay(reader.getTerminal(), entry),
                             null, null,
                             reader.isSet(Option.AUTO_REMOVE_SLASH) ? sep : null,
                             null,
                             false));
                 } else {
-                    candidates.add(new Candidate(value, getDisplay(reader.getTerminal(), p),
+                    candidates.add(new Candidate(value, getDisplay(reader.getTerminal(), entry),
                             null, null, null, null, true));
                 }
-            });
+            }
         } catch (IOException e) {
             // Ignore
         }
     }
 
+    /**
+     * Checks whether the given file should be completed.
+     *
+     * @param path the file
+     * @return <code>true</code> if the file is not hidden
+     * @deprecated this method is no longer called by the completion, which uses the
+     *     cached attributes of the directory entries: override {@link #accept(DirectoryCache.Entry)}
+     *     instead, calling <code>accept(entry.path())</code> to keep an existing override
+     */
+    @Deprecated
     protected boolean accept(Path path) {
         try {
             return !Files.isHidden(path);
@@ -101,6 +114,16 @@ public class FileNameCompleter implements Completer
         }
     }
 
+    /**
+     * Checks whether the given entry should be completed.
+     *
+     * @param entry the directory entry
+     * @return <code>true</code> if the entry is not hidden
+     */
+    protected boolean accept(DirectoryCache.Entry entry) {
+        return !entry.isHidden();
+    }
+
     protected Path getUserDir() {
         return Paths.get(System.getProperty("user.dir"));
     }
@@ -109,15 +132,26 @@ public class FileNameCompleter implements Completer
         return Paths.get(System.getProperty("user.home"));
     }
 
+    protected DirectoryCache getDirectoryCache() {
+        return DirectoryCache.getDefault();
+    }
+
+    protected String getDisplay(Terminal terminal, DirectoryCache.Entry entry) {
+        return getDisplay(terminal, entry.name(), entry.isDirectory(), entry.isSymbolicLink());
+    }
+
     protected String getDisplay(Terminal terminal, Path p) {
+        return getDisplay(terminal, p.getFileName().toString(), Files.isDirectory(p), Files.isSymbolicLink(p));
+    }
+
+    private String getDisplay(Terminal terminal, String name, boolean directory, boolean symbolicLink) {
         // TODO: use $LS_COLORS for output
-        String name = p.getFileName().toString();
-        if (Files.isDirectory(p)) {
+        if (directory) {
             AttributedStringBuilder sb = new AttributedStringBuilder();
             sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
             sb.append("/");
             name = sb.toAnsi(terminal);
-        } else if (Files.isSymbolicLink(p)) {
+        } else if (symbolicLink) {
             AttributedStringBuilder sb = new AttributedStringBuilder();
             sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
             sb.append("@");
@@ -9,10 +9,13 @@
 package org.jline.reader.impl.history;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jline.reader.History;
 import org.jline.reader.LineReader;
@@ -33,7 +36,7 @@ public class DefaultHistory implements History {
     public static final int DEFAULT_HISTORY_SIZE = 500;
     public static final int DEFAULT_HISTORY_FILE_SIZE = 10000;
 
-    private final LinkedList<Entry> items = new LinkedList<>();
+    private final EntryBuffer items = new EntryBuffer(this::createEntry);
 
     private LineReader reader;
 
@@ -42,6 +45,22 @@ public class DefaultHistory implements History {
     private int offset = 0;
     private int index = 0;
 
+    private SharedHistoryFile sharedFile;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /** Marks that the shared history file has been replaced and needs to be loaded again */
+    private static final List<String> RELOAD = Collections.unmodifiableList(new ArrayList<>());
+
+    private HistoryJournal journal;
+    private Path journalPath;
+    private final Queue<List<String>> sharedTails = new ConcurrentLinkedQueue<>();
+
+    private TrigramIndex trigrams;
+    private int trigramsFirst = 0;
+
+    private PrefixIndex prefixes;
+    private int prefixesFirst = 0;
+
     public DefaultHistory() {
     }
 
@@ -77,10 +96,23 @@ public class DefaultHistory implements History {
 
     @Override
     public void load() throws IOException {
+        closeJournal();
+        sharedTails.clear();
         Path path = getPath();
         if (path != null) {
             try {
-                if (Files.exists(path)) {
+                SharedHistoryFile file = sharedFile(path);
+                if (file != null) {
+                    if (Files.exists(path)) {
+                        // Read the file while holding the lock so that no line is partially written
+                        HistoryTail tail = file.locked(() -> loadTail(path));
+                        file.reset(tail.length());
+                    } else {
+                        internalClear();
+                    }
+                } else if (Files.exists(path) && isSet(reader, LineReader.Option.HISTORY_LAZY_LOAD)) {
+                    loadTail(path);
+                } else if (Files.exists(path)) {
                     Log.trace("Loading history from: ", path);
                     try (BufferedReader reader = Files.newBufferedReader(path)) {
                         internalClear();
@@ -98,6 +130,88 @@ public class DefaultHistory implements History {
         }
     }
 
+    private HistoryTail loadTail(Path path) throws IOException {
+        Log.trace("Lazily loading history from: ", path);
+        internalClear();
+        HistoryTail tail = HistoryTail.read(path,
+                getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE),
+                isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+        // Number the entries as if the whole file had been loaded
+        offset = tail.linesInFile() - tail.size();
+        items.setTail(tail, offset);
+        lastLoaded = items.size();
+        nbEntriesInFile = tail.linesInFile();
+        maybeResize();
+        return tail;
+    }
+
+    private SharedHistoryFile sharedFile(Path path) {
+        if (!isSet(reader, LineReader.Option.HISTORY_SHARED)) {
+            return null;
+        }
+        Path p = path.toAbsolutePath().normalize();
+        if (sharedFile == null || !sharedFile.getPath().equals(p)) {
+            sharedFile = new SharedHistoryFile(p);
+        }
+        return sharedFile;
+    }
+
+    /**
+     * Read the entries appended to a shared history file by other
+     * processes, when starting to navigate the history.
+     */
+    private void maybeRefresh() {
+        Path path = getPath();
+        SharedHistoryFile file = path != null ? sharedFile(path) : null;
+        // Entries not saved yet are at the end of the history, so
+        // the new ones will be read when saving them
+        if (file == null || lastLoaded != items.size() || index != items.size()) {
+            return;
+        }
+        try {
+            if (addSharedTails(path)) {
+                return;
+            }
+            List<String> tail = file.refresh();
+            if (tail != null) {
+                addSharedLines(path, tail);
+            } else {
+                load();
+            }
+        } catch (IOException e) {
+            Log.warn("Failed to refresh history", e);
+        }
+    }
+
+    /**
+     * Add the lines read by the journal when appending to a shared history file.
+     *
+     * @return <code>true</code> if the history has been loaded again
+     */
+    private boolean addSharedTails(Path path) throws IOException {
+        List<String> tail;
+        while ((tail = sharedTails.poll()) != null) {
+            if (tail == RELOAD) {
+                load();
+                return true;
+            }
+            addSharedLines(path, tail);
+        }
+        return false;
+    }
+
+    private void addSharedLines(Path path, List<String> lines) {
+        for (String line : lines) {
+            try {
+                addHistoryLine(path, line);
+            } catch (IllegalArgumentException e) {
+                Log.debug("Ignoring bad history line: ", line);
+            }
+        }
+        nbEntriesInFile += lines.size();
+        lastLoaded = items.size();
+    }
+
     protected void addHistoryLine(Path path, String line) {
         if (reader.isSet(LineReader.Option.HISTORY_TIMESTAMPED)) {
             int idx = line.indexOf(':');
@@ -124,6 +238,8 @@ public class DefaultHistory implements History {
 
     @Override
     public void purge() throws IOException {
+        closeJournal();
+        sharedTails.clear();
         internalClear();
         Path path = getPath();
         if (path != null) {
@@ -134,10 +250,18 @@ public class DefaultHistory implements History {
 
     @Override
     public void save() throws IOException {
+        closeJournal();
         Path path = getPath();
         if (path != null) {
             Log.trace("Saving history to: ", path);
             Files.createDirectories(path.toAbsolutePath().getParent());
+            SharedHistoryFile file = sharedFile(path);
+            if (file != null) {
+                if (!addSharedTails(path)) {
+                    saveShared(path, file);
+                }
+                return;
+            }
             // Append new items to the history file
             try (BufferedWriter writer = Files.newBufferedWriter(path.toAbsolutePath(),
               StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.CREATE)) {
@@ -157,39 +281,177 @@ public class DefaultHistory implements History {
         lastLoaded = items.size();
     }
 
-    protected void trimHistory(Path path, int max) throws IOException {
-        Log.trace("Trimming history path: ", path);
-        // Load all history entries
-        LinkedList<Entry> allItems = new LinkedList<>();
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            reader.lines().forEach(l -> {
-                int idx = l.indexOf(':');
-                Instant time = Instant.ofEpochMilli(Long.parseLong(l.substring(0, idx)));
-                String line = unescape(l.substring(idx + 1));
-                allItems.add(createEntry(allItems.size(), time, line));
-            });
+    private void saveShared(Path path, SharedHistoryFile file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : items.subList(lastLoaded, items.size())) {
+            if (isPersistable(entry)) {
+                sb.append(format(entry));
+            }
+        }
+        int nb = items.size() - lastLoaded;
+        List<String> tail = file.append(sb.toString(), false);
+        if (tail != null) {
+            nbEntriesInFile += nb;
+            addSharedLines(path, tail);
+        } else {
+            // The file has been replaced by a compaction since it has been read
+            load();
         }
-        // Remove duplicates
-        doTrimHistory(allItems, max);
-        // Write history
+        int max = getInt(reader, LineReader.HISTORY_FILE_SIZE, DEFAULT_HISTORY_FILE_SIZE);
+        if (nbEntriesInFile > max + max / 4) {
+            compactInBackground(file, max);
+        }
+    }
+
+    private void compactInBackground(SharedHistoryFile file, int max) {
+        if (compacting.compareAndSet(false, true)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    compactHistory(file, max);
+                } catch (IOException | RuntimeException e) {
+                    Log.warn("Failed to compact history", e);
+                } finally {
+                    compacting.set(false);
+                }
+            }, "JLine history compaction");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Compact a shared history file.  The file is trimmed without holding the lock,
+     * which is only taken to copy the entries appended in the mean time and to
+     * replace the file.
+     */
+    private void compactHistory(SharedHistoryFile file, int max) throws IOException {
+        Path path = file.getPath();
+        Log.trace("Compacting history path: ", path);
+        Object identity = SharedHistoryFile.identity(path);
+        // Only read the lines completely written when starting
+        long length = file.locked(() -> Files.size(path));
         Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
-        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardOpenOption.WRITE)) {
-            for (Entry entry : allItems) {
-                writer.append(format(entry));
+        try {
+            HistoryTrimmer.trim(path, length, temp, max, isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+            file.locked(() -> {
+                if (!Objects.equals(identity, SharedHistoryFile.identity(path))) {
+                    // Compacted by another process
+                    return null;
+                }
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    long position = length;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                HistoryTrimmer.move(temp, path);
+                return null;
+            });
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Queue the new entries to the write-behind journal, so that adding
+     * an entry does not wait for the history file to be written.
+     */
+    private void saveIncremental() {
+        Path path = getPath();
+        if (path == null) {
+            lastLoaded = items.size();
+            return;
+        }
+        if (journal != null && !path.equals(journalPath)) {
+            try {
+                closeJournal();
+            } catch (IOException e) {
+                Log.warn("Failed to save history", e);
             }
         }
-        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
-        // Keep items in memory
-        internalClear();
-        offset = allItems.get(0).index();
-        items.addAll(allItems);
+        if (journal == null) {
+            journal = new HistoryJournal(journalSink(path),
+                    HistoryJournal.Sync.of(getString(reader, LineReader.HISTORY_SYNC, "close")));
+            journalPath = path;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : items.subList(lastLoaded, items.size())) {
+            if (isPersistable(entry)) {
+                sb.append(format(entry));
+            }
+        }
+        if (sb.length() > 0) {
+            journal.append(sb.toString());
+        }
+        nbEntriesInFile += items.size() - lastLoaded;
         lastLoaded = items.size();
-        nbEntriesInFile = items.size();
+        // If we are over 25% max size, trim history file
+        int max = getInt(reader, LineReader.HISTORY_FILE_SIZE, DEFAULT_HISTORY_FILE_SIZE);
+        if (nbEntriesInFile > max + max / 4) {
+            // Compact the file once the pending entries have been written
+            SharedHistoryFile file = sharedFile(path);
+            if (file != null) {
+                journal.run(() -> compactHistory(file, max));
+            } else {
+                journal.run(() -> trimFile(path, max));
+            }
+            // The entries in memory are kept, and the
+            // trimmed file has at most max entries
+            nbEntriesInFile = max;
+        }
+    }
+
+    private HistoryJournal.Sink journalSink(Path path) {
+        SharedHistoryFile file = sharedFile(path);
+        if (file == null) {
+            return new HistoryJournal.FileSink(path);
+        }
+        return new HistoryJournal.Sink() {
+            @Override
+            public void write(String text, boolean force) throws IOException {
+                List<String> tail = file.append(text, force);
+                sharedTails.add(tail != null ? tail : RELOAD);
+            }
+
+            @Override
+            public void close(boolean force) {
+            }
+        };
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            HistoryJournal j = journal;
+            journal = null;
+            j.close();
+        }
+    }
+
+    protected void trimHistory(Path path, int max) throws IOException {
+        int last = offset + items.size();
+        int count = trimFile(path, max);
+        // Keep items in memory, the last one keeping its index
+        Log.trace("Loading history from: ", path);
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            internalClear();
+            offset = Math.max(0, last - count);
+            reader.lines().forEach(line -> addHistoryLine(path, line));
+        }
+        lastLoaded = items.size();
+        nbEntriesInFile = count;
         maybeResize();
     }
 
+    private int trimFile(Path path, int max) throws IOException {
+        Log.trace("Trimming history path: ", path);
+        return HistoryTrimmer.trim(path, max, isSet(reader, LineReader.Option.HISTORY_TIMESTAMPED));
+    }
+
     /**
      * Create a history entry. Subclasses may override to use their own entry implementations.
+     * Entries are not retained: they are created when accessed from the compact history store.
      * @param index index of history entry
      * @param time entry creation time
      * @param line the entry text
@@ -205,25 +467,25 @@ public class DefaultHistory implements History {
         lastLoaded = 0;
         nbEntriesInFile = 0;
         items.clear();
+        trigrams = null;
+        prefixes = null;
     }
 
+    /**
+     * Keep the last <code>max</code> distinct entries, in a single pass from the end.
+     */
     static void doTrimHistory(List<Entry> allItems, int max) {
-        int idx = 0;
-        while (idx < allItems.size()) {
-            int ridx = allItems.size() - idx - 1;
-            String line = allItems.get(ridx).line().trim();
-            ListIterator<Entry> iterator = allItems.listIterator(ridx);
-            while (iterator.hasPrevious()) {
-                String l = iterator.previous().line();
-                if (line.equals(l.trim())) {
-                    iterator.remove();
-                }
+        Set<String> seen = new HashSet<>();
+        List<Entry> kept = new ArrayList<>();
+        for (ListIterator<Entry> it = allItems.listIterator(allItems.size()); it.hasPrevious() && kept.size() < max;) {
+            Entry entry = it.previous();
+            if (seen.add(entry.line().trim())) {
+                kept.add(entry);
             }
-            idx++;
-        }
-        while (allItems.size() > max) {
-            allItems.remove(0);
         }
+        Collections.reverse(kept);
+        allItems.clear();
+        allItems.addAll(kept);
     }
 
     public int size() {
@@ -254,7 +516,7 @@ public class DefaultHistory implements History {
     }
 
     public String get(final int index) {
-        return items.get(index - offset).line();
+        return items.getLine(index - offset);
     }
 
     @Override
@@ -272,7 +534,7 @@ public class DefaultHistory implements History {
             line = line.trim();
         }
         if (isSet(reader, LineReader.Option.HISTORY_IGNORE_DUPS)) {
-            if (!items.isEmpty() && line.equals(items.getLast().line())) {
+            if (!items.isEmpty() && line.equals(items.getLine(items.size() - 1))) {
                 return;
             }
         }
@@ -281,12 +543,7 @@ public class DefaultHistory implements History {
         }
         internalAdd(time, line);
         if (isSet(reader, LineReader.Option.HISTORY_INCREMENTAL)) {
-            try {
-                save();
-            }
-            catch (IOException e) {
-                Log.warn("Failed to save history", e);
-            }
+            saveIncremental();
         }
     }
 
@@ -310,20 +567,115 @@ public class DefaultHistory implements History {
     }
 
     protected void internalAdd(Instant time, String line) {
-        Entry entry = new EntryImpl(offset + items.size(), time, line);
-        items.add(entry);
+        int idx = offset + items.size();
+        items.add(idx, time, line);
+        if (trigrams != null) {
+            trigrams.add(idx, line);
+        }
+        if (prefixes != null) {
+            prefixes.add(idx, line);
+        }
         maybeResize();
     }
 
     private void maybeResize() {
-        while (size() > getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE)) {
+        int max = getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE);
+        while (size() > max) {
             items.removeFirst();
             lastLoaded--;
             offset++;
         }
+        // Evicted entries are skipped when searching, but purge them
+        // from the index once they outnumber the live ones
+        if (trigrams != null && offset - trigramsFirst > size()) {
+            trigrams.compact(offset);
+            trigramsFirst = offset;
+        }
+        // The prefix index is cheaper to build again than to compact
+        if (prefixes != null && offset - prefixesFirst > size()) {
+            prefixes = null;
+        }
         index = size();
     }
 
+    /**
+     * Returns the indices of the entries which may contain the given term,
+     * ignoring case, in ascending order.  The trigram index used to compute
+     * the candidates is built on the first call and then kept up to date.
+     * <p>
+     * The result is a superset of the entries containing the term, so the
+     * lines still need to be matched.  When the term extends a previous
+     * term, the previous result can be given to narrow it instead of
+     * querying the whole index.
+     * </p>
+     *
+     * @param term the searched term
+     * @param within the candidates of a term contained in <code>term</code>, or <code>null</code>
+     * @return the candidate indices, or <code>null</code> if the term is too short
+     *         to narrow the search and no previous result was given
+     */
+    public int[] candidates(CharSequence term, int[] within) {
+        if (trigrams == null) {
+            trigrams = new TrigramIndex();
+            trigramsFirst = offset;
+            for (int i = 0; i < items.size(); i++) {
+                trigrams.add(offset + i, items.getLine(i));
+            }
+        }
+        return trigrams.candidates(term, within, offset);
+    }
+
+    /**
+     * Returns the index of the closest entry starting with the given prefix,
+     * searching backward from the entry before <code>index</code>, or forward
+     * from <code>index</code>.  The prefix index used for the search is built
+     * on the first call and then kept up to date, so that the cost of a search
+     * depends on the prefix rather than on the size of the history.
+     *
+     * @param prefix the prefix
+     * @param index the index to search from
+     * @param backward whether to search the older entries
+     * @param caseInsensitive whether to ignore case
+     * @return the index of the entry, or <code>-1</code> if no entry matches
+     */
+    public int searchPrefix(String prefix, int index, boolean backward, boolean caseInsensitive) {
+        int first = offset;
+        int last = offset + items.size() - 1;
+        if (prefix.isEmpty()) {
+            int idx = backward ? Math.min(index - 1, last) : Math.max(index, first);
+            return idx >= first && idx <= last ? idx : -1;
+        }
+        if (prefixes == null) {
+            prefixes = new PrefixIndex();
+            prefixesFirst = offset;
+            for (int i = 0; i < items.size(); i++) {
+                prefixes.add(offset + i, items.getLine(i));
+            }
+        }
+        Postings postings = prefixes.get(prefix);
+        if (postings == null) {
+            return -1;
+        }
+        int i = postings.ceiling(index);
+        // The indexed prefixes are truncated and case folded, so check the lines
+        if (backward) {
+            for (i--; i >= 0 && postings.data[i] >= first; i--) {
+                int idx = postings.data[i];
+                if (idx <= last && get(idx).regionMatches(caseInsensitive, 0, prefix, 0, prefix.length())) {
+                    return idx;
+                }
+            }
+        } else {
+            for (i = Math.max(i, postings.ceiling(first)); i < postings.size && postings.data[i] <= last; i++) {
+                int idx = postings.data[i];
+                if (get(idx).regionMatches(caseInsensitive, 0, prefix, 0, prefix.length())) {
+                    return idx;
+                }
+            }
+        }
+        return -1;
+    }
+
     public ListIterator<Entry> iterator(int index) {
         return items.listIterator(index - offset);
     }
@@ -375,6 +727,7 @@ public class DefaultHistory implements History {
      * index was already at the last entry.
      */
     public boolean moveToLast() {
+        maybeRefresh();
         int lastEntry = size() - 1;
         if (lastEntry >= 0 && lastEntry != index) {
             index = size() - 1;
@@ -403,6 +756,7 @@ public class DefaultHistory implements History {
      * history is already at the beginning.
      */
     public boolean moveToFirst() {
+        maybeRefresh();
         if (size() > 0 && index != 0) {
             index = 0;
             return true;
@@ -425,7 +779,7 @@ public class DefaultHistory implements History {
         if (index >= size()) {
             return "";
         }
-        return items.get(index).line();
+        return items.getLine(index);
     }
 
     /**
@@ -434,6 +788,7 @@ public class DefaultHistory implements History {
      * @return true if we successfully went to the previous element
      */
     public boolean previous() {
+        maybeRefresh();
         if (index <= 0) {
             return false;
         }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.jline.reader.History.Entry;
+
+/**
+ * Circular buffer of history entries, giving constant time indexed
+ * access, appending at the end and removal of the oldest entry.
+ *
+ * Entries are stored in columns: the timestamps, in milliseconds, in a
+ * <code>long[]</code> and the lines as ids in a {@link LineTable}, so
+ * that repeated lines are only stored once.  The {@link Entry} objects
+ * are created on demand when accessed, and entries are numbered
+ * consecutively.
+ *
+ * The buffer may start with the entries of a {@link HistoryTail},
+ * which are decoded when accessed and come before the added ones.
+ */
+final class EntryBuffer extends AbstractList<Entry> implements RandomAccess {
+
+    @FunctionalInterface
+    interface EntryFactory {
+        Entry create(int index, Instant time, String line);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final EntryFactory factory;
+    private final LineTable lines = new LineTable();
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] lineIds = new int[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private int firstIndex;
+
+    private HistoryTail tail;
+    private int tailStart;
+    private int tailSize;
+    private int tailIndex;
+
+    EntryBuffer(EntryFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Sets the lazily decoded entries at the beginning of this buffer,
+     * which must be empty.
+     *
+     * @param tail the lazily decoded history file
+     * @param index the index of the first entry of the file
+     */
+    public void setTail(HistoryTail tail, int index) {
+        this.tail = tail;
+        this.tailStart = 0;
+        this.tailSize = tail.size();
+        this.tailIndex = index;
+        modCount++;
+    }
+
+    @Override
+    public Entry get(int index) {
+        if (index < 0 || index >= tailSize + size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (index < tailSize) {
+            int line = tailStart + index;
+            return tail.get(line, tailIndex + line, factory);
+        }
+        int i = index - tailSize;
+        int slot = (head + i) & (times.length - 1);
+        return factory.create(firstIndex + i, Instant.ofEpochMilli(times[slot]), lines.get(lineIds[slot]));
+    }
+
+    /**
+     * Returns the line of the given entry without creating the entry.
+     *
+     * @param index the position of the entry
+     * @return the line of the entry
+     */
+    public String getLine(int index) {
+        if (index >= tailSize && index < tailSize + size) {
+            return lines.get(lineIds[(head + index - tailSize) & (times.length - 1)]);
+        }
+        return get(index).line();
+    }
+
+    @Override
+    public int size() {
+        return tailSize + size;
+    }
+
+    @Override
+    public boolean add(Entry entry) {
+        add(entry.index(), entry.time(), entry.line());
+        return true;
+    }
+
+    /**
+     * Appends an entry.  The index is only used for the first
+     * entry after the ones of the file, the following ones being
+     * numbered consecutively.
+     *
+     * @param index the entry index
+     * @param time the entry time
+     * @param line the entry line
+     */
+    public void add(int index, Instant time, String line) {
+        if (size == times.length) {
+            grow();
+        }
+        if (size == 0) {
+            firstIndex = index;
+        }
+        int slot = (head + size) & (times.length - 1);
+        times[slot] = time.toEpochMilli();
+        lineIds[slot] = lines.intern(line);
+        size++;
+        modCount++;
+    }
+
+    public void removeFirst() {
+        if (tailSize > 0) {
+            tailStart++;
+            if (--tailSize == 0) {
+                tail = null;
+            }
+            modCount++;
+            return;
+        }
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        lines.release(lineIds[head]);
+        head = (head + 1) & (times.length - 1);
+        firstIndex++;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        lines.clear();
+        tail = null;
+        tailSize = 0;
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    private void grow() {
+        // the capacity is kept a power of two so that indices can be masked
+        int capacity = times.length << 1;
+        long[] newTimes = new long[capacity];
+        int[] newLineIds = new int[capacity];
+        int n = times.length - head;
+        System.arraycopy(times, head, newTimes, 0, n);
+        System.arraycopy(times, 0, newTimes, n, head);
+        System.arraycopy(lineIds, head, newLineIds, 0, n);
+        System.arraycopy(lineIds, 0, newLineIds, n, head);
+        times = newTimes;
+        lineIds = newLineIds;
+        head = 0;
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.utils.Log;
+import org.jline.utils.ShutdownHooks;
+
+/**
+ * Write-behind journal of the history entries.
+ *
+ * Entries are queued by the thread reading the input and written by a
+ * background thread, which appends all the entries queued in the mean
+ * time with a single write.  The history file is kept open between the
+ * writes, and is forced to disk according to the {@link Sync} policy.
+ * Entries which fail to be written are kept and written with the next ones.
+ * The background thread is only running while there are entries to write,
+ * and a shutdown task writes the pending entries when the JVM exits.
+ */
+final class HistoryJournal {
+
+    /**
+     * When the written entries are forced to disk.
+     */
+    enum Sync {
+        /** Leave it to the operating system */
+        NEVER,
+        /** When the journal is closed */
+        CLOSE,
+        /** After each group of entries */
+        COMMIT;
+
+        static Sync of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                Log.warn("Unknown history sync policy: ", name);
+                return CLOSE;
+            }
+        }
+    }
+
+    /**
+     * Where the entries are written.
+     */
+    interface Sink {
+
+        void write(String text, boolean force) throws IOException;
+
+        void close(boolean force) throws IOException;
+
+    }
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws IOException;
+    }
+
+    private static final class Task {
+        final String text;
+        final Action action;
+        final CountDownLatch done;
+        IOException error;
+
+        Task(String text, Action action, CountDownLatch done) {
+            this.text = text;
+            this.action = action;
+            this.done = done;
+        }
+    }
+
+    /** How long the writer thread waits for new entries before stopping */
+    private static final long IDLE_TIMEOUT = 5;
+    /** How long closing the journal waits for the pending entries to be written */
+    private static final long CLOSE_TIMEOUT = 30;
+
+    private final Sink sink;
+    private final Sync sync;
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final ShutdownHooks.Task hook;
+    private Thread thread;
+    private boolean closed;
+
+    HistoryJournal(Sink sink, Sync sync) {
+        this.sink = sink;
+        this.sync = sync;
+        this.hook = ShutdownHooks.add(this::closeQuietly);
+    }
+
+    /**
+     * Queues the given text to be appended to the history file.
+     * This method does not block.
+     *
+     * @param text the formatted entries
+     */
+    synchronized void append(String text) {
+        if (closed) {
+            throw new IllegalStateException("History journal is closed");
+        }
+        enqueue(new Task(text, null, null));
+    }
+
+    /**
+     * Queues an action to be run once the previously queued entries
+     * have been written.  The sink is closed before running the action,
+     * so that the action can replace the history file.
+     *
+     * @param action the action to run
+     */
+    synchronized void run(Action action) {
+        if (closed) {
+            throw new IllegalStateException("History journal is closed");
+        }
+        enqueue(new Task(null, () -> {
+            sink.close(sync != Sync.NEVER);
+            action.run();
+        }, null));
+    }
+
+    /**
+     * Writes the pending entries, forces them to disk unless the policy is
+     * {@link Sync#NEVER}, and stops the journal.
+     *
+     * @throws IOException if the entries could not be written
+     */
+    void close() throws IOException {
+        CountDownLatch done = new CountDownLatch(1);
+        Task task = new Task(null, () -> sink.close(sync != Sync.NEVER), done);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            enqueue(task);
+        }
+        ShutdownHooks.remove(hook);
+        try {
+            if (!done.await(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out while closing the history journal");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the history journal", e);
+        }
+        if (task.error != null) {
+            throw task.error;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            Log.warn("Failed to save history", e);
+        }
+    }
+
+    /**
+     * Queues the given task, starting the writer thread if needed.
+     * The thread stops when it has been idle for a while, so that
+     * journals which are not written to do not keep a thread.
+     */
+    private synchronized void enqueue(Task task) {
+        queue.add(task);
+        if (thread == null) {
+            thread = new Thread(this::run, "JLine history journal");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        try {
+            while (true) {
+                Task next = queue.poll(IDLE_TIMEOUT, TimeUnit.SECONDS);
+                if (next == null) {
+                    synchronized (this) {
+                        if (queue.isEmpty()) {
+                            thread = null;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                batch.add(next);
+                queue.drainTo(batch);
+                for (Task task : batch) {
+                    if (task.text != null) {
+                        sb.append(task.text);
+                        continue;
+                    }
+                    try {
+                        write(sb);
+                        task.action.run();
+                    } catch (Throwable e) {
+                        if (task.done == null) {
+                            Log.warn("Failed to save history", e);
+                        }
+                        task.error = e instanceof IOException ? (IOException) e : new IOException(e);
+                    } finally {
+                        if (task.done != null) {
+                            task.done.countDown();
+                        }
+                    }
+                    if (task.done != null) {
+                        return;
+                    }
+                }
+                try {
+                    write(sb);
+                } catch (Throwable e) {
+                    Log.warn("Failed to save history", e);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // exit
+        } finally {
+            // Do not leave a close waiting if the thread is stopped
+            for (Task task : batch) {
+                if (task.done != null) {
+                    task.done.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered entries.  The buffer is only cleared once they
+     * have been written, so that entries which could not be written are
+     * retried with the next group of entries.
+     */
+    private void write(StringBuilder sb) throws IOException {
+        if (sb.length() > 0) {
+            sink.write(sb.toString(), sync == Sync.COMMIT);
+            sb.setLength(0);
+        }
+    }
+
+    /**
+     * A sink appending to a file, which is kept open until closed.
+     */
+    static final class FileSink implements Sink {
+
+        private final Path path;
+        private FileChannel channel;
+
+        FileSink(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void write(String text, boolean force) throws IOException {
+            if (channel == null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+                channel = FileChannel.open(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        }
+
+        @Override
+        public void close(boolean force) throws IOException {
+            if (channel != null) {
+                try {
+                    if (force) {
+                        channel.force(false);
+                    }
+                } finally {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.jline.reader.History.Entry;
+
+/**
+ * The last lines of a history file, decoded on access.
+ *
+ * The file is scanned backwards from the end until enough lines have been
+ * found, and only those last lines are read and indexed, so that the cost
+ * of loading does not depend on the file size.  The bytes are copied and
+ * the file is closed, so that it can still be replaced or deleted on
+ * platforms which do not allow it while it is open.
+ */
+final class HistoryTail {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final byte[] data;
+    private final int[] starts;
+    private final int[] ends;
+    private final int count;
+    private final int linesInFile;
+    private final long length;
+    private final boolean timestamped;
+    private final Instant loadTime;
+
+    private HistoryTail(byte[] data, int[] starts, int[] ends, int count,
+                        int linesInFile, long length, boolean timestamped, Instant loadTime) {
+        this.data = data;
+        this.starts = starts;
+        this.ends = ends;
+        this.count = count;
+        this.linesInFile = linesInFile;
+        this.length = length;
+        this.timestamped = timestamped;
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Reads the given history file and indexes at most <code>max</code> of its last lines.
+     *
+     * @param path the history file
+     * @param max the maximum number of lines to index
+     * @param timestamped whether the lines are prefixed with a timestamp
+     * @return the indexed file
+     * @throws IOException if the file can not be read
+     */
+    static HistoryTail read(Path path, int max, boolean timestamped) throws IOException {
+        byte[] data;
+        long size;
+        long tail;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            tail = Math.max(findTail(channel, size, max), size - MAX_ARRAY_SIZE);
+            data = new byte[(int) (size - tail)];
+            readFully(channel, ByteBuffer.wrap(data), tail);
+        }
+        int limit = data.length;
+        int[] starts = new int[Math.max(0, Math.min(max, 1024))];
+        int[] ends = new int[starts.length];
+        int count = 0;
+        // Ignore the newline terminating the last line
+        int end = limit;
+        if (end > 0 && data[end - 1] == '\n') {
+            end--;
+        }
+        int pos = end;
+        while (count < max && end >= 0 && limit > 0) {
+            while (pos > 0 && data[pos - 1] != '\n') {
+                pos--;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, Math.min(max, count * 2));
+                ends = Arrays.copyOf(ends, starts.length);
+            }
+            starts[count] = pos;
+            // Strip the carriage return of CRLF line endings, as the eager loader does
+            ends[count] = end > pos && data[end - 1] == '\r' ? end - 1 : end;
+            count++;
+            if (pos == 0) {
+                break;
+            }
+            end = --pos;
+        }
+        // Lines have been collected from the end, put them back in order
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int s = starts[i];
+            starts[i] = starts[j];
+            starts[j] = s;
+            int e = ends[i];
+            ends[i] = ends[j];
+            ends[j] = e;
+        }
+        int linesInFile;
+        if (count == 0 || tail + starts[0] == 0) {
+            linesInFile = count;
+        } else {
+            // The beginning of the file has not been read, estimate the number of lines
+            long scanned = size - tail - starts[0];
+            linesInFile = (int) Math.min(Integer.MAX_VALUE, (long) count * size / scanned);
+        }
+        return new HistoryTail(data, starts, ends, count, linesInFile, size, timestamped, Instant.now());
+    }
+
+    /**
+     * Returns the offset of the first of the <code>max</code> last lines of the file,
+     * reading it backwards by chunks.
+     */
+    private static long findTail(FileChannel channel, long size, int max) throws IOException {
+        if (max <= 0) {
+            return size;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        int newlines = 0;
+        long pos = size;
+        while (pos > 0) {
+            int len = (int) Math.min(CHUNK_SIZE, pos);
+            pos -= len;
+            chunk.clear();
+            chunk.limit(len);
+            readFully(channel, chunk, pos);
+            for (int i = len - 1; i >= 0; i--) {
+                // The newline terminating the last line does not start a line
+                if (chunk.get(i) == '\n' && pos + i != size - 1 && ++newlines == max) {
+                    return pos + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * The number of indexed lines.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * The number of lines in the file, estimated if the file
+     * has more lines than the indexed ones.
+     */
+    int linesInFile() {
+        return linesInFile;
+    }
+
+    /**
+     * The size of the file when it has been read.
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Decodes the given line.
+     *
+     * Lines with an invalid timestamp are returned as a whole
+     * with the load time, as lines without timestamps.
+     *
+     * @param line the line number, between 0 and {@link #size()}
+     * @param index the index of the returned entry
+     * @param factory the factory creating the entry
+     * @return the decoded entry
+     */
+    Entry get(int line, int index, EntryBuffer.EntryFactory factory) {
+        int start = starts[line];
+        String s = new String(data, start, ends[line] - start, StandardCharsets.UTF_8);
+        if (timestamped) {
+            int idx = s.indexOf(':');
+            if (idx > 0) {
+                try {
+                    Instant time = Instant.ofEpochMilli(Long.parseLong(s.substring(0, idx)));
+                    return factory.create(index, time, DefaultHistory.unescape(s.substring(idx + 1)));
+                } catch (DateTimeException | NumberFormatException e) {
+                    // fall through
+                }
+            }
+        }
+        return factory.create(index, loadTime, DefaultHistory.unescape(s));
+    }
+
+}
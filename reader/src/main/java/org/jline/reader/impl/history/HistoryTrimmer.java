@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming trimming of history files.
+ *
+ * The file is read once, backwards from the end, keeping the most recent
+ * occurrence of each line until enough lines have been kept, so that only
+ * the surviving lines are held in memory.  They are written in order to
+ * a temporary file which then replaces the history file.
+ */
+final class HistoryTrimmer {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private HistoryTrimmer() {
+    }
+
+    /**
+     * Trims the given history file, keeping at most <code>max</code>
+     * distinct lines, and replaces it atomically if possible.
+     *
+     * @param path the history file
+     * @param max the maximum number of lines to keep
+     * @param timestamped whether the lines are prefixed with a timestamp
+     * @return the number of lines kept
+     * @throws IOException if an error occurs
+     */
+    static int trim(Path path, int max, boolean timestamped) throws IOException {
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            int count = trim(path, Files.size(path), temp, max, timestamped);
+            move(temp, path);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the last <code>max</code> distinct lines of the first
+     * <code>length</code> bytes of a history file to the given target.
+     *
+     * @param path the history file
+     * @param length the length of the file to read
+     * @param target the file to write the trimmed history to
+     * @param max the maximum number of lines to keep
+     * @param timestamped whether the lines are prefixed with a timestamp
+     * @return the number of lines kept
+     * @throws IOException if an error occurs
+     */
+    static int trim(Path path, long length, Path target, int max, boolean timestamped) throws IOException {
+        List<byte[]> kept = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            // The bytes of the current line, in reverse order
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long position = length;
+            boolean last = true;
+            while (position > 0 && kept.size() < max) {
+                int n = (int) Math.min(CHUNK_SIZE, position);
+                position -= n;
+                chunk.clear().limit(n);
+                while (chunk.hasRemaining() && channel.read(chunk, position + chunk.position()) > 0) {
+                    // read until the chunk is full
+                }
+                byte[] bytes = chunk.array();
+                for (int i = chunk.position() - 1; i >= 0 && kept.size() < max; i--) {
+                    byte b = bytes[i];
+                    if (b == '\n') {
+                        // Ignore the newline terminating the last line
+                        if (!last) {
+                            keep(line, lineLength, kept, seen, timestamped);
+                        }
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                    last = false;
+                }
+            }
+            // The first line of the file, which is not preceded by a newline
+            if (position == 0 && !last && kept.size() < max) {
+                keep(line, lineLength, kept, seen, timestamped);
+            }
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                out.write(kept.get(i));
+                out.write('\n');
+            }
+        }
+        return kept.size();
+    }
+
+    /**
+     * Replaces the history file, atomically if supported by the file system.
+     */
+    static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void keep(byte[] reversed, int length, List<byte[]> kept, Set<String> seen, boolean timestamped) {
+        // An empty line is loaded as an empty entry, unless the lines have
+        // timestamps in which case it would make the file fail to load
+        if (length == 0 && timestamped) {
+            return;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = reversed[length - 1 - i];
+        }
+        if (seen.add(key(new String(bytes, StandardCharsets.UTF_8), timestamped))) {
+            kept.add(bytes);
+        }
+    }
+
+    /**
+     * The text of the entry, ignoring its timestamp and surrounding blanks.
+     */
+    private static String key(String line, boolean timestamped) {
+        if (timestamped) {
+            int idx = line.indexOf(':');
+            if (idx > 0 && isNumber(line, idx)) {
+                line = line.substring(idx + 1);
+            }
+        }
+        try {
+            return DefaultHistory.unescape(line).trim();
+        } catch (StringIndexOutOfBoundsException e) {
+            // trailing backslash
+            return line.trim();
+        }
+    }
+
+    private static boolean isNumber(String s, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reference counted intern table of history lines.
+ *
+ * Each distinct line is stored once, encoded in UTF-8, and identified
+ * by an integer.  The table is an open addressing hash table with linear
+ * probing, so that no object is allocated per line besides its bytes.
+ */
+final class LineTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[][] lines = new byte[INITIAL_CAPACITY][];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] refs = new int[INITIAL_CAPACITY];
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int nbFree;
+    private int nextId;
+    private int size;
+    /** The hash table slots, containing the line ids plus one, or 0 if empty */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Returns the id of the given line, adding it to the table if needed,
+     * and increments its reference count.
+     *
+     * @param line the line
+     * @return the line id
+     */
+    int intern(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0) {
+            int id = slots[i] - 1;
+            if (hashes[id] == hash && Arrays.equals(lines[id], bytes)) {
+                refs[id]++;
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        int id = nbFree > 0 ? freeIds[--nbFree] : newId();
+        lines[id] = bytes;
+        hashes[id] = hash;
+        refs[id] = 1;
+        slots[i] = id + 1;
+        if (++size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        return new String(lines[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decrements the reference count of the given line,
+     * removing it from the table if it is no longer used.
+     *
+     * @param id the line id
+     */
+    void release(int id) {
+        if (--refs[id] > 0) {
+            return;
+        }
+        int mask = slots.length - 1;
+        int i = hashes[id] & mask;
+        while (slots[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        // Backward shift deletion, moving back the following entries
+        // of the cluster which would no longer be reachable
+        slots[i] = 0;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == 0) {
+                break;
+            }
+            int k = hashes[slots[j] - 1] & mask;
+            if (i <= j ? (k <= i || k > j) : (k <= i && k > j)) {
+                slots[i] = slots[j];
+                slots[j] = 0;
+                i = j;
+            }
+        }
+        lines[id] = null;
+        if (nbFree == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, nbFree * 2);
+        }
+        freeIds[nbFree++] = id;
+        size--;
+    }
+
+    /**
+     * The number of distinct lines.
+     */
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        lines = new byte[INITIAL_CAPACITY][];
+        hashes = new int[INITIAL_CAPACITY];
+        refs = new int[INITIAL_CAPACITY];
+        freeIds = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+        nbFree = 0;
+        nextId = 0;
+        size = 0;
+    }
+
+    private int newId() {
+        if (nextId == lines.length) {
+            int capacity = nextId * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+        return nextId++;
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int slot : slots) {
+            if (slot != 0) {
+                int i = hashes[slot - 1] & mask;
+                while (newSlots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                newSlots[i] = slot;
+            }
+        }
+        slots = newSlots;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        // Spread the high bits, as the slot is computed from the low ones
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.Arrays;
+
+/**
+ * Ascending list of history entry indices.
+ */
+final class Postings {
+
+    int[] data = new int[4];
+    int size;
+
+    void add(int index) {
+        if (size > 0 && data[size - 1] == index) {
+            return;
+        }
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = index;
+    }
+
+    Postings copy() {
+        Postings copy = new Postings();
+        copy.data = Arrays.copyOf(data, Math.max(size, 4));
+        copy.size = size;
+        return copy;
+    }
+
+    void removeBefore(int from) {
+        int i = Arrays.binarySearch(data, 0, size, from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        if (i > 0) {
+            System.arraycopy(data, i, data, 0, size - i);
+            size -= i;
+        }
+    }
+
+    /**
+     * Returns the position of the first index not lower than the given one,
+     * or the size of the list if all the indices are lower.
+     */
+    int ceiling(int index) {
+        int i = Arrays.binarySearch(data, 0, size, index);
+        return i < 0 ? -i - 1 : i;
+    }
+
+}
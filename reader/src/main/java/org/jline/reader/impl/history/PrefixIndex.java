@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.Arrays;
+
+/**
+ * Radix tree of the case folded prefixes of the history lines, each node
+ * holding the indices of the entries starting with its prefix.
+ *
+ * Only the first {@link #MAX_DEPTH} characters of the lines are indexed,
+ * so the entries found for a longer prefix are candidates which need to
+ * be checked.  Chains of nodes with a single child are collapsed into a
+ * single node labelled with several characters, so that the number of
+ * nodes depends on the number of distinct prefixes where lines differ
+ * rather than on the number of indexed characters.
+ */
+final class PrefixIndex {
+
+    static final int MAX_DEPTH = 16;
+
+    private static final class Node {
+        /** The characters from the parent node to this one */
+        String label;
+        Postings postings;
+        /** The first characters of the labels of the children, sorted */
+        char[] keys;
+        Node[] children;
+
+        Node(String label, Postings postings) {
+            this.label = label;
+            this.postings = postings;
+        }
+
+        Node child(char c) {
+            int i = keys != null ? Arrays.binarySearch(keys, c) : -1;
+            return i >= 0 ? children[i] : null;
+        }
+
+        void setChild(Node child) {
+            char c = child.label.charAt(0);
+            if (keys == null) {
+                keys = new char[] { c };
+                children = new Node[] { child };
+                return;
+            }
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                children[i] = child;
+                return;
+            }
+            i = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(children, 0, n, 0, i);
+            k[i] = c;
+            n[i] = child;
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(children, i, n, i + 1, children.length - i);
+            keys = k;
+            children = n;
+        }
+    }
+
+    // the root node, which has no postings
+    private final Node root = new Node("", null);
+
+    /**
+     * Indexes the given line.  Entries must be added in ascending order.
+     *
+     * @param index the index of the entry
+     * @param line the line of the entry
+     */
+    void add(int index, String line) {
+        String key = fold(line);
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            Node child = node.child(key.charAt(pos));
+            if (child == null) {
+                child = new Node(key.substring(pos), new Postings());
+                child.postings.add(index);
+                node.setChild(child);
+                return;
+            }
+            int common = commonLength(child.label, key, pos);
+            if (common < child.label.length()) {
+                // split the child where the line differs from its label
+                Node mid = new Node(child.label.substring(0, common), child.postings.copy());
+                child.label = child.label.substring(common);
+                mid.setChild(child);
+                node.setChild(mid);
+                child = mid;
+            }
+            child.postings.add(index);
+            node = child;
+            pos += common;
+        }
+    }
+
+    /**
+     * Returns the indices of the entries starting with the given prefix,
+     * ignoring case and the characters after {@link #MAX_DEPTH}.
+     *
+     * @param prefix the prefix, which must not be empty
+     * @return the indices of the entries, or <code>null</code> if none
+     */
+    Postings get(CharSequence prefix) {
+        String key = fold(prefix);
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            Node child = node.child(key.charAt(pos));
+            if (child == null) {
+                return null;
+            }
+            int common = commonLength(child.label, key, pos);
+            if (pos + common == key.length()) {
+                // the prefix ends within or at the end of the label
+                return child.postings;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            pos += common;
+        }
+        return node.postings;
+    }
+
+    private static String fold(CharSequence s) {
+        int n = Math.min(s.length(), MAX_DEPTH);
+        char[] chars = new char[n];
+        for (int i = 0; i < n; i++) {
+            chars[i] = TrigramIndex.fold(s.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private static int commonLength(String label, String key, int pos) {
+        int n = Math.min(label.length(), key.length() - pos);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A history file shared between several processes.
+ *
+ * Writers append to the file while holding an exclusive lock on a
+ * sibling <code>.lock</code> file, so that the history file itself can
+ * be atomically replaced when it is compacted.  Each session remembers
+ * the offset up to which it has read the file, so that only the entries
+ * appended by other sessions need to be read.  When the file has been
+ * replaced, the offset is no longer valid and the file has to be loaded
+ * again.
+ */
+final class SharedHistoryFile {
+
+    /**
+     * File locks are held by the whole JVM, so they need
+     * to be guarded when used from several threads.
+     */
+    private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private static final int HEAD_SIZE = 256;
+
+    @FunctionalInterface
+    interface Action<T> {
+        T run() throws IOException;
+    }
+
+    private final Path path;
+    private long offset = -1;
+    private Object identity;
+
+    SharedHistoryFile(Path path) {
+        this.path = path.toAbsolutePath().normalize();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Runs the given action while holding the lock on the file.
+     */
+    <T> T locked(Action<T> action) throws IOException {
+        ReentrantLock lock = LOCKS.computeIfAbsent(path, p -> new ReentrantLock());
+        lock.lock();
+        try {
+            Files.createDirectories(path.getParent());
+            Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockPath,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock fileLock = channel.lock();
+                try {
+                    return action.run();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the file is the one which has been read up to the current offset.
+     */
+    synchronized boolean isCurrent() throws IOException {
+        return offset >= 0
+                && identity != null
+                && identity.equals(identity(path))
+                && Files.size(path) >= offset;
+    }
+
+    /**
+     * Sets the offset up to which the current file has been read.
+     */
+    synchronized void reset(long offset) throws IOException {
+        this.offset = offset;
+        this.identity = identity(path);
+    }
+
+    /**
+     * Reads the complete lines appended by other sessions since the last read if the
+     * file is still the current one.  Otherwise, <code>null</code> is returned and the
+     * file needs to be loaded again.
+     *
+     * The lock is held so that the file can not be replaced between the check and
+     * the read, which would read the new file from the offset of the old one.
+     */
+    List<String> refresh() throws IOException {
+        return locked(() -> {
+            synchronized (this) {
+                return isCurrent() ? readTail() : null;
+            }
+        });
+    }
+
+    /**
+     * Reads the complete lines appended since the last read.
+     * This must be called while holding the lock, after having checked
+     * that the file is the current one.
+     */
+    private synchronized List<String> readTail() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= offset) {
+                return lines;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, size - offset));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                // read until the buffer is full
+            }
+            byte[] bytes = buffer.array();
+            int end = buffer.position();
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            String text = new String(bytes, 0, end, StandardCharsets.UTF_8);
+            int start = 0;
+            int idx;
+            while ((idx = text.indexOf('\n', start)) >= 0) {
+                lines.add(text.substring(start, idx));
+                start = idx + 1;
+            }
+            offset += end;
+        }
+        return lines;
+    }
+
+    /**
+     * Appends the given text to the file.  If the file is still the current one,
+     * the lines appended by other sessions since the last read are returned and
+     * the offset is moved past the appended text.  Otherwise, <code>null</code>
+     * is returned and the file needs to be loaded again.
+     *
+     * The lines are appended and the offset moved atomically, so that
+     * they are not read again by a concurrent {@link #refresh()}.
+     */
+    List<String> append(String text, boolean force) throws IOException {
+        return locked(() -> {
+            synchronized (this) {
+                List<String> tail = Files.exists(path) && isCurrent() ? readTail() : null;
+                try (FileChannel channel = FileChannel.open(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (force) {
+                        channel.force(false);
+                    }
+                    if (tail != null) {
+                        offset = channel.size();
+                    }
+                }
+                return tail;
+            }
+        });
+    }
+
+    /**
+     * Returns an object identifying the file, which does not change when appending to it.
+     * File keys are reused once a replaced file has been deleted, so the first line of
+     * the file is also compared.
+     */
+    static Object identity(Path path) throws IOException {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            Object key = attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+            return Arrays.asList(key, firstLine(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer firstLine(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEAD_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // read until the buffer is full
+            }
+            int end = 0;
+            while (end < buffer.position() && buffer.get(end++) != '\n') {
+                // find the end of the first line
+            }
+            buffer.position(0);
+            buffer.limit(end);
+            return buffer;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from the case folded trigrams of the history lines
+ * to the indices of the entries containing them.
+ *
+ * The posting lists are kept in ascending order of entry index, which
+ * is the order in which entries are added.  Evicted entries are skipped
+ * when querying and removed by {@link #compact(int)}.
+ */
+final class TrigramIndex {
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    void add(int index, String line) {
+        int n = line.length();
+        if (n < 3) {
+            return;
+        }
+        char c0 = fold(line.charAt(0));
+        char c1 = fold(line.charAt(1));
+        for (int i = 2; i < n; i++) {
+            char c2 = fold(line.charAt(i));
+            postings.computeIfAbsent(key(c0, c1, c2), k -> new Postings()).add(index);
+            c0 = c1;
+            c1 = c2;
+        }
+    }
+
+    /**
+     * Returns the indices, in ascending order and not lower than <code>from</code>,
+     * of the entries which contain all the trigrams of the given term.
+     *
+     * @param term the searched term
+     * @param within a previous result to narrow, or <code>null</code>
+     * @param from the lowest index to return
+     * @return the candidate indices, or <code>within</code> if the term has no trigrams
+     */
+    int[] candidates(CharSequence term, int[] within, int from) {
+        int n = term.length();
+        if (n < 3) {
+            return within;
+        }
+        List<Postings> lists = new ArrayList<>();
+        char c0 = fold(term.charAt(0));
+        char c1 = fold(term.charAt(1));
+        for (int i = 2; i < n; i++) {
+            char c2 = fold(term.charAt(i));
+            Postings p = postings.get(key(c0, c1, c2));
+            if (p == null) {
+                return new int[0];
+            }
+            if (!lists.contains(p)) {
+                lists.add(p);
+            }
+            c0 = c1;
+            c1 = c2;
+        }
+        lists.sort((p1, p2) -> Integer.compare(p1.size, p2.size));
+        int[] result;
+        int size;
+        if (within != null) {
+            result = within.clone();
+            size = result.length;
+        } else {
+            Postings p = lists.get(0);
+            result = Arrays.copyOf(p.data, p.size);
+            size = p.size;
+        }
+        for (Postings p : lists) {
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                int idx = result[i];
+                if (idx >= from && Arrays.binarySearch(p.data, 0, p.size, idx) >= 0) {
+                    result[k++] = idx;
+                }
+            }
+            size = k;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Removes the indices lower than <code>from</code> from all the posting lists.
+     *
+     * @param from the lowest index to keep
+     */
+    void compact(int from) {
+        for (Iterator<Postings> it = postings.values().iterator(); it.hasNext();) {
+            Postings p = it.next();
+            p.removeBefore(from);
+            if (p.size == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static long key(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+}
@@ -10,6 +10,8 @@ package org.jline.keymap;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.logging.ConsoleHandler;
@@ -23,11 +25,13 @@ import org.jline.terminal.Size;
 import org.jline.terminal.impl.DumbTerminal;
 import org.jline.reader.impl.ReaderTestSupport.EofPipedInputStream;
 import org.jline.terminal.Terminal;
+import org.jline.utils.NonBlockingReader;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class BindingReaderTest {
 
@@ -74,4 +78,112 @@ public class BindingReaderTest {
         assertEquals("b", reader.getLastBinding());
         assertNull(reader.readBinding(keyMap));
     }
+
+    @Test
+    public void testAdaptiveTimeout() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append("\033[A");
+        }
+        in.setIn(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        BindingReader reader = new BindingReader(terminal.reader());
+        KeyMap<Binding> keyMap = new KeyMap<>();
+        keyMap.bind(new Reference("esc"), "\033");
+        keyMap.bind(new Reference("up"), "\033[A");
+        assertEquals(1000L, reader.getAmbiguousTimeout(keyMap));
+        reader.setAdaptiveTimeout(true);
+        for (int i = 0; i < 10; i++) {
+            // each sequence gives two gaps, and eight are needed
+            assertEquals(i < 4 ? 1000L : BindingReader.DEFAULT_MIN_AMBIGUOUS_TIMEOUT,
+                    reader.getAmbiguousTimeout(keyMap));
+            assertEquals(new Reference("up"), reader.readBinding(keyMap));
+        }
+        assertEquals(BindingReader.DEFAULT_MIN_AMBIGUOUS_TIMEOUT, reader.getAmbiguousTimeout(keyMap));
+        reader.setMinAmbiguousTimeout(2000L);
+        assertEquals(1000L, reader.getAmbiguousTimeout(keyMap));
+        reader.setAdaptiveTimeout(false);
+        assertEquals(1000L, reader.getAmbiguousTimeout(keyMap));
+    }
+
+    @Test
+    public void testAdaptiveTimeoutGrowingDelays() {
+        StringBuilder chars = new StringBuilder();
+        StringBuilder delays = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            chars.append("\033[A");
+            delays.append("\0\0\0");
+        }
+        // the delays between the characters of the sequences grow to 50ms
+        for (int i = 0; i < 6; i++) {
+            chars.append("\033[A");
+            delays.append("\0\062\062");
+        }
+        BindingReader reader = new BindingReader(new TimedReader(chars.toString(), delays.toString()));
+        reader.setAdaptiveTimeout(true);
+        KeyMap<Binding> keyMap = new KeyMap<>();
+        keyMap.bind(new Reference("esc"), "\033");
+        keyMap.bind(new Reference("up"), "\033[A");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(new Reference("up"), reader.readBinding(keyMap));
+        }
+        assertEquals(BindingReader.DEFAULT_MIN_AMBIGUOUS_TIMEOUT, reader.getAmbiguousTimeout(keyMap));
+
+        // the first slow sequence is split, which resets the measured delays
+        assertEquals(new Reference("esc"), reader.readBinding(keyMap));
+        assertEquals(new Reference("up"), reader.readBinding(keyMap));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(new Reference("up"), reader.readBinding(keyMap));
+        }
+        long timeout = reader.getAmbiguousTimeout(keyMap);
+        assertTrue("timeout: " + timeout, timeout >= 50 && timeout < 1000);
+        assertNull(reader.readBinding(keyMap));
+    }
+
+    /**
+     * A reader returning the given characters, each one after the given delay in milliseconds.
+     */
+    private static class TimedReader extends NonBlockingReader {
+        private final String chars;
+        private final String delays;
+        private int index;
+        private long next;
+
+        TimedReader(String chars, String delays) {
+            this.chars = chars;
+            this.delays = delays;
+            this.next = System.currentTimeMillis() + delays.charAt(0);
+        }
+
+        @Override
+        protected int read(long timeout, boolean isPeek) throws IOException {
+            if (index >= chars.length()) {
+                return EOF;
+            }
+            long wait = next - System.currentTimeMillis();
+            if (wait > 0) {
+                if (timeout > 0 && wait > timeout) {
+                    sleep(timeout);
+                    return READ_EXPIRED;
+                }
+                sleep(wait);
+            }
+            int c = chars.charAt(index);
+            if (!isPeek && ++index < chars.length()) {
+                next = System.currentTimeMillis() + delays.charAt(index);
+            }
+            return c;
+        }
+
+        private static void sleep(long millis) throws IOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.CandidateSink;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+import org.jline.reader.impl.DefaultParser;
+import org.jline.reader.impl.ReaderTestSupport;
+import org.jline.reader.impl.completer.AggregateCompleter;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AggregateCompleter}.
+ */
+public class AggregateCompleterTest
+    extends ReaderTestSupport
+{
+    @Test
+    public void testConcurrent() throws Exception {
+        Completer slow = (reader, line, candidates) -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                return;
+            }
+            candidates.add(new Candidate("foobaz"));
+        };
+        AggregateCompleter completer = new AggregateCompleter(
+                new StringsCompleter("foo"), slow, new StringsCompleter("foobar"));
+        ParsedLine line = new DefaultParser().parse("f", 1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            assertEquals(asList("foo", "foobaz", "foobar"), complete(completer, line));
+
+            completer.setExecutor(executor);
+            assertEquals(asList("foo", "foobaz", "foobar"), complete(completer, line));
+            Sink sink = new Sink();
+            completer.complete(reader, line, sink);
+            assertEquals(3, sink.candidates.size());
+            assertFalse(sink.partial);
+
+            // the slow completer is dropped
+            completer.setTimeout(50);
+            assertEquals(asList("foo", "foobar"), complete(completer, line));
+            sink = new Sink();
+            completer.complete(reader, line, sink);
+            assertEquals(2, sink.candidates.size());
+            assertTrue(sink.partial);
+
+            // the list of candidates says that it is partial
+            reader.setCompleter(completer);
+            assertBuffer("foo", new TestBuffer("f").tab());
+            assertConsoleOutputContains("(partial)");
+
+            out.reset();
+            completer.setTimeout(0);
+            assertBuffer("foo", new TestBuffer("f").tab());
+            assertFalse(out.toString().contains("(partial)"));
+
+            // through a background completion
+            out.reset();
+            completer.setTimeout(50);
+            reader.setOpt(LineReader.Option.ASYNC_COMPLETION);
+            assertBuffer("foo", new TestBuffer("f").tab());
+            assertConsoleOutputContains("(partial)");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Sink implements CandidateSink {
+        final List<Candidate> candidates = new ArrayList<>();
+        boolean partial;
+
+        @Override
+        public void add(Candidate candidate) {
+            candidates.add(candidate);
+        }
+
+        @Override
+        public void setPartial() {
+            partial = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private List<String> complete(Completer completer, ParsedLine line) {
+        List<Candidate> candidates = new ArrayList<>();
+        completer.complete(reader, line, candidates);
+        return candidates.stream().map(Candidate::value).collect(Collectors.toList());
+    }
+}
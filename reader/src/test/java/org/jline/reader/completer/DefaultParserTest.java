@@ -9,7 +9,9 @@
 package org.jline.reader.completer;
 
 import java.util.Arrays;
+import java.util.Random;
 
+import org.jline.reader.CompletingParsedLine;
 import org.jline.reader.ParsedLine;
 import org.jline.reader.impl.DefaultParser;
 import org.jline.reader.impl.ReaderTestSupport;
@@ -81,4 +83,30 @@ public class DefaultParserTest extends ReaderTestSupport {
         delimited = parser.parse("'1 '2\\' 3", 0);
         assertEquals(Arrays.asList("1 2'", "3"), delimited.words());
     }
+
+    @Test
+    public void testIncremental() {
+        DefaultParser incremental = new DefaultParser().incremental(true);
+        Random random = new Random(42);
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            int pos = buffer.length() == 0 ? 0 : random.nextInt(buffer.length() + 1);
+            if (buffer.length() > 0 && random.nextInt(4) == 0) {
+                buffer.deleteCharAt(Math.min(pos, buffer.length() - 1));
+            } else {
+                buffer.insert(pos, "ab \\\n'\"".charAt(random.nextInt(7)));
+            }
+            String line = buffer.toString();
+            int cursor = random.nextInt(line.length() + 1);
+            ParsedLine expected = parser.parse(line, cursor);
+            ParsedLine actual = incremental.parse(line, cursor);
+            assertEquals(line, expected.words(), actual.words());
+            assertEquals(line, expected.wordIndex(), actual.wordIndex());
+            assertEquals(line, expected.wordCursor(), actual.wordCursor());
+            assertEquals(line, ((CompletingParsedLine) expected).rawWordCursor(), ((CompletingParsedLine) actual).rawWordCursor());
+            assertEquals(line, ((CompletingParsedLine) expected).rawWordLength(), ((CompletingParsedLine) actual).rawWordLength());
+            assertEquals(line, ((CompletingParsedLine) expected).escape("x y", false).toString(),
+                    ((CompletingParsedLine) actual).escape("x y", false).toString());
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jline.reader.impl.completer.DirectoryCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DirectoryCache}.
+ */
+public class DirectoryCacheTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jline");
+        Files.createFile(dir.resolve("foo"));
+        Files.createDirectory(dir.resolve("bar"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testAttributes() throws IOException {
+        DirectoryCache cache = new DirectoryCache(8, 100, 60000, false);
+        List<DirectoryCache.Entry> entries = cache.list(dir, "");
+        assertEquals(2, entries.size());
+        for (DirectoryCache.Entry entry : entries) {
+            assertEquals("bar".equals(entry.name()), entry.isDirectory());
+            assertFalse(entry.isSymbolicLink());
+            assertEquals(dir.resolve(entry.name()), entry.path());
+        }
+    }
+
+    @Test
+    public void testHidden() throws IOException {
+        Path hidden = Files.createFile(dir.resolve(".hidden"));
+        DirectoryCache cache = new DirectoryCache(8, 100, 60000, false);
+        for (DirectoryCache.Entry entry : cache.list(dir, "")) {
+            assertEquals(Files.isHidden(entry.path()), entry.isHidden());
+        }
+        assertEquals(3, cache.list(dir, "").size());
+        Files.delete(hidden);
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        DirectoryCache cache = new DirectoryCache(8, 100, 200, false);
+        assertEquals(set("bar", "foo"), names(cache.list(dir, "")));
+        Files.createFile(dir.resolve("baz"));
+        assertEquals(set("bar", "foo"), names(cache.list(dir, "")));
+        Thread.sleep(300);
+        assertEquals(set("bar", "baz", "foo"), names(cache.list(dir, "")));
+        Files.delete(dir.resolve("baz"));
+        cache.invalidate(dir);
+        assertEquals(set("bar", "foo"), names(cache.list(dir, "")));
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        // falls back to the time to live when the directory can not be watched
+        DirectoryCache cache = new DirectoryCache(8, 100, 200, true);
+        assertEquals(set("bar", "foo"), names(cache.list(dir, "")));
+        Files.createFile(dir.resolve("baz"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (names(cache.list(dir, "")).size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(set("bar", "baz", "foo"), names(cache.list(dir, "")));
+        cache.clear();
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            Files.createFile(dir.resolve("file" + i));
+        }
+        DirectoryCache cache = new DirectoryCache(8, 10, 60000, false);
+        assertEquals(10, cache.list(dir, "").size());
+        assertEquals(set("file2", "file20", "file21", "file22", "file23", "file24"),
+                names(cache.list(dir, "file2")));
+        assertTrue(names(cache.list(dir, "ba")).contains("bar"));
+        assertTrue(names(cache.list(dir, "FI")).isEmpty());
+        assertEquals(set("file2", "file20", "file21", "file22", "file23", "file24"),
+                names(cache.list(dir, "FILE2", true)));
+    }
+
+    private static Set<String> set(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    private static Set<String> names(List<DirectoryCache.Entry> entries) {
+        return entries.stream().map(DirectoryCache.Entry::name).collect(Collectors.toCollection(TreeSet::new));
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class BufferTest {
@@ -45,4 +46,38 @@ public class BufferTest {
         assertEquals(22, buffer.cursor());
         assertFalse(buffer.down());
     }
+
+    @Test
+    public void testSnapshots() {
+        BufferImpl buffer = new BufferImpl();
+        buffer.write("hello world");
+        String str = buffer.toString();
+        assertSame(str, buffer.toString());
+        assertSame(str, buffer.upToCursor());
+        buffer.cursor(5);
+        assertEquals("hello", buffer.upToCursor());
+        assertSame(buffer.upToCursor(), buffer.upToCursor());
+        assertSame(str, buffer.toString());
+
+        // the copies share the code points until they are modified
+        BufferImpl copy = buffer.copy();
+        assertSame(str, copy.toString());
+        buffer.write(",");
+        assertEquals("hello, world", buffer.toString());
+        assertEquals("hello world", copy.toString());
+        copy.currChar('_');
+        assertEquals("hello_world", copy.toString());
+        assertEquals("hello, world", buffer.toString());
+        buffer.copyFrom(copy);
+        assertSame(copy.toString(), buffer.toString());
+        buffer.delete(1);
+        assertEquals("helloworld", buffer.toString());
+        assertEquals("hello_world", copy.toString());
+        copy.backspace(5);
+        assertEquals("_world", copy.toString());
+        assertEquals("helloworld", buffer.toString());
+        assertEquals("hel", buffer.substring(0, 3));
+        assertEquals("llowo", buffer.substring(2, 7));
+        assertEquals("world", buffer.substring(5));
+    }
 }
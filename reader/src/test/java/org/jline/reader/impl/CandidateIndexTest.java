@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.jline.reader.Candidate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CandidateIndexTest {
+
+    @Test
+    public void testStartingWith() {
+        List<Candidate> candidates = candidates("foo", "Foobar", "fox", "bar", "\u001b[1mfoo\u001b[0m", "baz");
+        CandidateIndex index = CandidateIndex.build(candidates);
+        assertEquals(5, index.size());
+        assertTrue(index.isFor(candidates));
+        assertFalse(index.isFor(candidates("foo")));
+        assertFalse(index.isFor(candidates("foo", "Foobar", "fox", "bar", "\u001b[1mfoo\u001b[0m", "baz")));
+
+        Map<String, List<Candidate>> foo = index.startingWith("foo", false);
+        assertEquals(1, foo.size());
+        assertEquals(2, foo.get("foo").size());
+        assertEquals(new HashSet<>(Arrays.asList("foo", "Foobar")), index.startingWith("foo", true).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("foo", "Foobar", "fox")), index.startingWith("fo", true).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("bar", "baz")), index.startingWith("ba", false).keySet());
+        assertEquals(5, index.startingWith("", false).size());
+        assertTrue(index.startingWith("q", true).isEmpty());
+    }
+
+    @Test
+    public void testMatching() {
+        CandidateIndex index = CandidateIndex.build(candidates("foo", "Foobar", "fox", "bar"));
+        assertEquals(new HashSet<>(Arrays.asList("Foobar", "bar")), index.matching(s -> s.contains("ar"), false).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("foo", "Foobar")), index.matching(s -> s.contains("oo"), true).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("Foobar")), index.matching(s -> s.contains("Fo"), false).keySet());
+        assertTrue(index.matching(s -> s.contains("Fo"), true).isEmpty());
+    }
+
+    @Test
+    public void testLargeSet() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 4 * CandidateIndex.PARALLEL_THRESHOLD; i++) {
+            values.add((i % 2 == 0 ? "Cmd" : "cmd") + i);
+        }
+        CandidateIndex index = CandidateIndex.build(candidates(values.toArray(new String[0])));
+        Set<String> expected = values.stream().filter(s -> s.toLowerCase().startsWith("cmd12")).collect(Collectors.toSet());
+        assertEquals(expected, index.startingWith("cmd12", true).keySet());
+        expected = values.stream().filter(s -> s.startsWith("cmd12")).collect(Collectors.toSet());
+        assertEquals(expected, index.startingWith("cmd12", false).keySet());
+        expected = values.stream().filter(s -> s.contains("999")).collect(Collectors.toSet());
+        assertEquals(expected, index.matching(s -> s.contains("999"), false).keySet());
+    }
+
+    @Test
+    public void testTypos() {
+        Random random = new Random(42);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 2 * CandidateIndex.WALK_THRESHOLD; i++) {
+            values.add(random(random, 2, 8));
+        }
+        CandidateIndex index = CandidateIndex.build(candidates(values.toArray(new String[0])));
+        for (int i = 0; i < 200; i++) {
+            String word = random(random, 0, 6);
+            boolean caseInsensitive = random.nextBoolean();
+            String wordi = caseInsensitive ? word.toLowerCase() : word;
+            for (int max = 0; max < 3; max++) {
+                int errors = max;
+                Set<String> expected = values.stream()
+                        .filter(s -> CandidateIndex.isTypo(wordi, caseInsensitive ? s.toLowerCase() : s, errors))
+                        .collect(Collectors.toSet());
+                assertEquals(word + " " + max, expected, index.typos(wordi, max, caseInsensitive).keySet());
+            }
+        }
+        CandidateIndex small = CandidateIndex.build(candidates("foo", "fOobar", "bar"));
+        assertEquals(new HashSet<>(Arrays.asList("foo", "fOobar")), small.typos("fob", 1, true).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("foo")), small.typos("fob", 1, false).keySet());
+    }
+
+    private static String random(Random random, int min, int max) {
+        char[] chars = new char[min + random.nextInt(max - min + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "abcAB".charAt(random.nextInt(5));
+        }
+        return new String(chars);
+    }
+
+    private static List<Candidate> candidates(String... values) {
+        return Arrays.stream(values).map(Candidate::new).collect(Collectors.toList());
+    }
+
+}
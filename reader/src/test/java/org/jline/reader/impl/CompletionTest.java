@@ -9,12 +9,20 @@
 package org.jline.reader.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
+
+import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
 import org.jline.reader.LineReader.Option;
 import org.jline.reader.Reference;
+import org.jline.reader.StreamingCompleter;
 import org.jline.reader.impl.completer.AggregateCompleter;
 import org.jline.reader.impl.completer.ArgumentCompleter;
 import org.jline.reader.impl.completer.NullCompleter;
@@ -144,4 +152,58 @@ public class CompletionTest extends ReaderTestSupport {
         assertLine("ab_helloWorld ", new TestBuffer("a\t\t\n\n"));
     }
 
+    @Test
+    public void testPagedMenu() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            values.add(String.format("c%04d", i));
+        }
+        reader.setCompleter(new StringsCompleter(values));
+        reader.unsetOpt(Option.AUTO_LIST);
+        reader.setOpt(Option.AUTO_MENU);
+
+        // 20 columns of 100 rows, which do not fit in the terminal
+        assertLine("c0101 ", new TestBuffer("c\t\006\016\n\n"));
+        assertConsoleOutputContains("of 100");
+        assertLine("c1900 ", new TestBuffer("c\t\002\n\n"));
+        assertLine("c1999 ", new TestBuffer("c\t\002\020\n\n"));
+    }
+
+    @Test
+    public void testStreamingCompleter() throws IOException {
+        reader.setCompleter((StreamingCompleter) (reader, line, sink) -> {
+            sink.add(new Candidate("foo"));
+            sink.add(new Candidate("foobar"));
+        });
+        assertBuffer("foobar ", new TestBuffer("foob\t"));
+
+        // synchronous completers are adapted
+        reader.setCompleter(new StringsCompleter("foo bar"));
+        reader.setOpt(Option.ASYNC_COMPLETION);
+        assertBuffer("foo\\ bar ", new TestBuffer("fo\t"));
+    }
+
+    @Test
+    public void testStreamingCompleterCancelled() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        reader.setCompleter((StreamingCompleter) (reader, line, sink) -> {
+            sink.add(new Candidate("foobar"));
+            while (!sink.isCancelled()) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            cancelled.countDown();
+        });
+        // a key press cancels the completion
+        assertBuffer("fox", new TestBuffer("fo\tx"));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+
+        // the candidates found before the timeout are used
+        reader.setVariable(LineReader.COMPLETION_TIMEOUT, 300);
+        assertBuffer("foobar ", new TestBuffer("fo\t"));
+    }
+
 }
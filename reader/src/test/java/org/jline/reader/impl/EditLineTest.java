@@ -9,6 +9,7 @@
 package org.jline.reader.impl;
 
 import org.jline.reader.LineReader;
+import org.jline.reader.Parser.ParseContext;
 import org.jline.reader.Reference;
 import org.junit.Test;
 
@@ -19,6 +20,7 @@ import static org.jline.reader.LineReader.BACKWARD_WORD;
 import static org.jline.reader.LineReader.END_OF_LINE;
 import static org.jline.reader.LineReader.FORWARD_WORD;
 import static org.jline.reader.LineReader.KILL_WORD;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests various features of editing lines.
@@ -226,4 +228,29 @@ public class EditLineTest
             ((DefaultParser) reader.getParser()).setEofOnEscapedNewLine(prev);
         }
     }
+
+    @Test
+    public void testSecondaryPromptsParsedOnce() throws Exception {
+        DefaultParser parser = new DefaultParser();
+        parser.setEofOnUnclosedQuote(true);
+        int[] count = new int[1];
+        reader.setParser((line, cursor, context) -> {
+            if (context == ParseContext.SECONDARY_PROMPT) {
+                count[0]++;
+            }
+            return parser.parse(line, cursor, context);
+        });
+        TestBuffer buffer = new TestBuffer("echo \"");
+        StringBuilder expected = new StringBuilder("echo \"");
+        for (int i = 0; i < 50; i++) {
+            buffer.enter().append("line");
+            expected.append("\nline");
+        }
+        buffer.append("\"").enter();
+        expected.append("\"");
+        assertLine(expected.toString(), buffer);
+        assertConsoleOutputContains("dquote> line");
+        // only the lines which changed are parsed again on each redisplay
+        assertTrue("parsed " + count[0] + " times", count[0] < 200);
+    }
 }
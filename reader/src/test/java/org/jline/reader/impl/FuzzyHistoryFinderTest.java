@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jline.reader.LineReader;
+import org.jline.reader.impl.history.DefaultHistory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FuzzyHistoryFinderTest extends ReaderTestSupport {
+
+    @Test
+    public void testScore() {
+        int[] positions = new int[3];
+        assertTrue(FuzzyHistoryFinder.score("gcm", "git commit -m", false, positions) > 0);
+        assertArrayEquals(new int[] { 0, 4, 6 }, positions);
+        assertEquals(FuzzyHistoryFinder.NO_MATCH, FuzzyHistoryFinder.score("gcx", "git commit -m", false, null));
+        assertEquals(FuzzyHistoryFinder.NO_MATCH, FuzzyHistoryFinder.score("GC", "git commit", true, null));
+        // consecutive characters and word starts rank higher
+        assertTrue(FuzzyHistoryFinder.score("com", "git commit", false, null)
+                > FuzzyHistoryFinder.score("com", "cd /home", false, null));
+        assertTrue(FuzzyHistoryFinder.score("gc", "git commit", false, null)
+                > FuzzyHistoryFinder.score("gc", "logic", false, null));
+        // the shortest match is scored
+        FuzzyHistoryFinder.score("ab", "a xxxx ab", false, positions);
+        assertEquals(7, positions[0]);
+    }
+
+    @Test
+    public void testSearch() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 100000);
+        DefaultHistory history = new DefaultHistory(reader);
+        for (int i = 0; i < 50000; i++) {
+            history.add("echo " + i);
+        }
+        history.add("git commit -m fix");
+        history.add("grep -r foo");
+        history.add("git checkout main");
+        history.add("gcm");
+        history.add("git commit -m fix");
+
+        FuzzyHistoryFinder finder = new FuzzyHistoryFinder(history, false);
+        assertEquals(5, finder.search("", 5).size());
+        assertEquals(history.size(), finder.count());
+
+        List<FuzzyHistoryFinder.Match> matches = finder.search("g", 3);
+        assertEquals(3, matches.size());
+        matches = finder.search("gc", 10);
+        assertEquals(Arrays.asList("gcm", "git commit -m fix", "git checkout main"), lines(matches));
+        // duplicates are reported once, with the most recent index
+        assertEquals(history.last(), matches.get(1).index());
+        assertEquals(4, finder.count());
+
+        matches = finder.search("gcm", 10);
+        assertEquals("gcm", matches.get(0).line());
+        assertEquals(3, matches.size());
+        matches = finder.search("gcmf", 10);
+        assertEquals(Arrays.asList("git commit -m fix"), lines(matches));
+
+        // the query shrinks
+        matches = finder.search("e 4999", 10);
+        assertEquals(Arrays.asList("echo 49999", "echo 49998", "echo 49997", "echo 49996", "echo 49995",
+                "echo 49994", "echo 49993", "echo 49992", "echo 49991", "echo 49990"), lines(matches));
+
+        history.add("echo 4999");
+        matches = finder.search("e 4999", 1);
+        assertEquals(Arrays.asList("echo 4999"), lines(matches));
+    }
+
+    private static List<String> lines(List<FuzzyHistoryFinder.Match> matches) {
+        return matches.stream().map(FuzzyHistoryFinder.Match::line).collect(Collectors.toList());
+    }
+
+}
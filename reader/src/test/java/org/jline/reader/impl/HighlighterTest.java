@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.reader.LineReader;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HighlighterTest extends ReaderTestSupport {
+
+    @Test
+    public void testSkipUnchangedBuffer() throws Exception {
+        List<String> buffers = new ArrayList<>();
+        reader.setHighlighter((reader, buffer) -> {
+            buffers.add(buffer);
+            return new AttributedString(buffer);
+        });
+        assertLine("abc", new TestBuffer("abc").left().left().right().enter());
+        assertTrue(buffers.contains("abc"));
+        for (int i = 1; i < buffers.size(); i++) {
+            assertNotEquals(buffers.get(i - 1), buffers.get(i));
+        }
+    }
+
+    @Test
+    public void testLineHighlighter() {
+        CommentHighlighter highlighter = new CommentHighlighter();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("select ").append(i).append(" from t\n");
+        }
+        String buffer = sb.toString();
+        AttributedString highlighted = highlighter.highlight(reader, buffer);
+        assertEquals(buffer, highlighted.toString());
+        assertEquals(101, highlighter.count);
+
+        // a single line is highlighted again
+        String edited = buffer.replace("select 50 ", "select 500 ");
+        highlighter.count = 0;
+        highlighted = incremental(highlighter, buffer, edited, highlighted);
+        assertEquals(1, highlighter.count);
+        assertEquals(new CommentHighlighter().highlight(reader, edited), highlighted);
+
+        // the following lines are highlighted until the comment is closed
+        String commented = edited.replace("select 20 ", "/* select 20 ").replace("select 30 ", "*/ select 30 ");
+        highlighter.count = 0;
+        highlighted = incremental(highlighter, edited, commented, highlighted);
+        assertEquals(11, highlighter.count);
+        assertEquals(new CommentHighlighter().highlight(reader, commented), highlighted);
+    }
+
+    private AttributedString incremental(CommentHighlighter highlighter, String previous, String buffer,
+                                         AttributedString highlighted) {
+        int start = 0;
+        while (buffer.charAt(start) == previous.charAt(start)) {
+            start++;
+        }
+        int end = buffer.length();
+        int previousEnd = previous.length();
+        while (buffer.charAt(end - 1) == previous.charAt(previousEnd - 1)) {
+            end--;
+            previousEnd--;
+        }
+        return highlighter.highlight(reader, buffer, previous, highlighted, start, previousEnd, end);
+    }
+
+    /**
+     * Highlights the block comments, the state being whether a line starts inside a comment.
+     */
+    static class CommentHighlighter extends LineHighlighter<Boolean> {
+        int count;
+
+        @Override
+        protected Boolean initialState() {
+            return false;
+        }
+
+        @Override
+        protected Boolean highlightLine(LineReader reader, String line, Boolean state, AttributedStringBuilder sb) {
+            count++;
+            boolean comment = state;
+            for (int i = 0; i < line.length(); i++) {
+                if (!comment && line.startsWith("/*", i)) {
+                    comment = true;
+                } else if (comment && line.startsWith("*/", i)) {
+                    sb.style(AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN)).append("*/");
+                    comment = false;
+                    i++;
+                    continue;
+                }
+                sb.style(comment ? AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN) : AttributedStyle.DEFAULT);
+                sb.append(line.charAt(i));
+            }
+            return comment;
+        }
+    }
+}
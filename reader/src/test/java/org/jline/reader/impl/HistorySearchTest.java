@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
+import org.jline.reader.Reference;
 import org.jline.reader.impl.history.DefaultHistory;
 import org.junit.Test;
 
@@ -58,6 +59,46 @@ public class HistorySearchTest extends ReaderTestSupport {
         assertEquals(5, history.size());
     }
 
+    @Test
+    public void testIndexedHistorySearch() throws Exception {
+        reader.setVariable(LineReader.HISTORY_SIZE, 5);
+        DefaultHistory history = new DefaultHistory(reader);
+        reader.setHistory(history);
+        history.add("git commit");
+        history.add("git checkout");
+        history.add("grep commit");
+        history.add("ls");
+        history.add("git COMMIT -a");
+        history.add("make");
+        // do not add the accepted lines
+        reader.setVariable(LineReader.DISABLE_HISTORY, true);
+
+        assertLine("git COMMIT -a", new TestBuffer().ctrl('R').append("comm").enter(), false);
+        assertLine("grep commit", new TestBuffer().ctrl('R').append("commit").ctrl('R').enter(), false);
+        // the oldest entry has been evicted
+        assertLine("grep commit", new TestBuffer().ctrl('R').append("commit").ctrl('R').ctrl('R').enter(), false);
+        assertLine("git checkout", new TestBuffer().ctrl('R').append("git c").append("he").enter(), false);
+    }
+
+    @Test
+    public void testFuzzyHistorySearch() throws Exception {
+        DefaultHistory history = new DefaultHistory(reader);
+        reader.setHistory(history);
+        history.add("git commit -m fix");
+        history.add("grep -r foo");
+        history.add("git checkout main");
+        history.add("gcm");
+        reader.setVariable(LineReader.DISABLE_HISTORY, true);
+        reader.getKeyMaps().get(LineReader.EMACS).bind(new Reference(LineReader.HISTORY_FUZZY_SEARCH), "\033z");
+
+        assertLine("gcm", new TestBuffer().append("\033z").append("gcm").enter().enter(), false);
+        assertLine("git checkout main", new TestBuffer().append("\033z").append("gcm").down().enter().enter(), false);
+        assertLine("git commit -m fix", new TestBuffer().append("\033z").append("gcmx").back().down().down().enter().enter(), false);
+        assertLine("git checkout main", new TestBuffer().append("\033z").append("gcmain").enter().enter(), false);
+        assertLine("grep -r foo!", new TestBuffer().append("\033z").append("rf").ctrl('E').append("!").enter(), false);
+        assertLine("abc", new TestBuffer().append("abc\033z").append("gcm").ctrl('G').enter(), false);
+    }
+
     @Test
     public void testForwardHistorySearch() throws Exception {
         DefaultHistory history = setupHistory();
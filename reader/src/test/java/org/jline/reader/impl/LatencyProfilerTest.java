@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import org.jline.reader.LineReader.Option;
+import org.jline.reader.impl.LatencyProfiler.Stage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyProfilerTest extends ReaderTestSupport {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000L, histogram.getMin());
+        assertEquals(1000000L, histogram.getMax());
+        assertEquals(500500.0, histogram.getMean(), 0.1);
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 1.07);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 100000; v += 7) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(LatencyHistogram.highestValue(bucket) >= v);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < v);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        assertLine("abc", new TestBuffer("abc").enter());
+        assertEquals(0, reader.getLatencyProfiler().getHistogram(Stage.TOTAL).getCount());
+    }
+
+    @Test
+    public void testProfileKeystrokes() throws Exception {
+        reader.setOpt(Option.PROFILE_LATENCY);
+        assertLine("abc", new TestBuffer("abc").enter());
+        LatencyProfiler profiler = reader.getLatencyProfiler();
+        long count = profiler.getHistogram(Stage.TOTAL).getCount();
+        assertEquals(4, count);
+        for (Stage stage : Stage.values()) {
+            assertEquals(count, profiler.getHistogram(stage).getCount());
+        }
+        assertTrue(profiler.getHistogram(Stage.DISPLAY).getMax() > 0);
+        assertTrue(profiler.getHistogram(Stage.TOTAL).getMax()
+                >= profiler.getHistogram(Stage.DISPLAY).getMax());
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LayoutTest {
+
+    @Test
+    public void testSameAsFullSplit() {
+        Random random = new Random(42);
+        Layout layout = new Layout(4);
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            int pos = random.nextInt(buffer.length() + 1);
+            if (buffer.length() > 0 && random.nextInt(4) == 0) {
+                buffer.deleteCharAt(Math.min(pos, buffer.length() - 1));
+            } else {
+                buffer.insert(pos, "abcd \t\n".charAt(random.nextInt(7)));
+            }
+            int columns = i % 500 == 0 ? 7 : 13;
+            AttributedString text = new AttributedStringBuilder()
+                    .style(AttributedStyle.BOLD).append(buffer).toAttributedString();
+
+            AttributedStringBuilder full = new AttributedStringBuilder().tabs(4);
+            int l = 0;
+            for (AttributedString line : Layout.splitLines(text)) {
+                full.append(l == 0 ? "> " : l + "> ").append(line);
+                l++;
+            }
+            List<AttributedString> lines = Layout.splitLines(full.toAttributedString());
+            List<AttributedString> expected = full.columnSplitLength(columns, true, false);
+            assertEquals(expected, layout.update(lines, columns, false));
+        }
+    }
+
+    @Test
+    public void testRowStarts() {
+        Layout layout = new Layout(4);
+        List<AttributedString> lines = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            lines.add(new AttributedString(i < 2 ? "> 0123456789\n" : "> 0123456789"));
+        }
+        assertEquals(6, layout.update(lines, 8, false).size());
+        assertEquals(0, layout.rowStart(0));
+        assertEquals(2, layout.rowStart(1));
+        assertEquals(4, layout.rowStart(2));
+        assertEquals(4, layout.rowStart(5));
+    }
+}
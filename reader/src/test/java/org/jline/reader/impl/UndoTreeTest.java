@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl;
+
+import org.jline.reader.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UndoTreeTest extends ReaderTestSupport {
+
+    @Test
+    public void testDeltas() {
+        BufferImpl buf = new BufferImpl();
+        UndoTree<Buffer> undo = new UndoTree<>(buf::copyFrom, new BufferDiffer());
+        undo.newState(buf.copy());
+        buf.write("hello world");
+        undo.newState(buf.copy());
+        buf.cursor(5);
+        buf.write(",");
+        undo.newState(buf.copy());
+        buf.cursor(0);
+        buf.delete(7);
+        undo.newState(buf.copy());
+        assertEquals("world", buf.toString());
+
+        undo.undo();
+        assertEquals("hello, world", buf.toString());
+        assertEquals(6, buf.cursor());
+        undo.undo();
+        assertEquals("hello world", buf.toString());
+        assertEquals(11, buf.cursor());
+        undo.redo();
+        assertEquals("hello, world", buf.toString());
+        assertEquals(6, buf.cursor());
+        undo.undo();
+        undo.undo();
+        assertEquals("", buf.toString());
+        assertFalse(undo.canUndo());
+
+        // a new state drops the states which could be redone
+        buf.write("foo");
+        undo.newState(buf.copy());
+        assertFalse(undo.canRedo());
+        undo.undo();
+        assertEquals("", buf.toString());
+    }
+
+    @Test
+    public void testMaxSize() {
+        BufferImpl buf = new BufferImpl();
+        UndoTree<Buffer> undo = new UndoTree<>(buf::copyFrom, new BufferDiffer());
+        undo.setMaxSize(10000);
+        undo.newState(buf.copy());
+        for (int i = 0; i < 1000; i++) {
+            buf.write("0123456789");
+            undo.newState(buf.copy());
+        }
+        assertTrue(undo.size() <= 10000);
+        int undone = 0;
+        while (undo.canUndo()) {
+            undo.undo();
+            undone++;
+        }
+        assertTrue(undone > 0 && undone < 1000);
+        assertEquals(10 * (1000 - undone), buf.length());
+    }
+
+    @Test
+    public void testNegativeMaxSize() {
+        BufferImpl buf = new BufferImpl();
+        UndoTree<Buffer> undo = new UndoTree<>(buf::copyFrom, new BufferDiffer());
+        undo.setMaxSize(-1);
+        assertEquals(0, undo.getMaxSize());
+        undo.newState(buf.copy());
+        buf.write("foo");
+        undo.newState(buf.copy());
+        assertFalse(undo.canUndo());
+        undo.clear();
+        undo.setMaxSize(-1);
+    }
+
+    @Test
+    public void testUndoWidget() throws Exception {
+        assertLine("foo bar", new TestBuffer("foo bar").ctrl('W').ctrl('_').enter(), false);
+        assertLine("foo ", new TestBuffer("foo bar").ctrl('W').ctrl('W').ctrl('_').enter(), false);
+    }
+}
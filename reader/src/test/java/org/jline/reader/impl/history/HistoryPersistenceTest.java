@@ -9,11 +9,17 @@
 package org.jline.reader.impl.history;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import org.jline.reader.LineReader;
@@ -24,6 +30,7 @@ import org.junit.Test;
 
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests file history.
@@ -72,6 +79,213 @@ public class HistoryPersistenceTest extends ReaderTestSupport {
         }
     }
 
+    @Test
+    public void testLazyLoad() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append(1000 + i).append(":cmd").append(i).append(i == 7 ? "\\nx" : "xxx").append("\n");
+        }
+        Files.write(Paths.get("test"), sb.toString().getBytes(StandardCharsets.UTF_8));
+        reader.setVariable(LineReader.HISTORY_FILE, Paths.get("test"));
+        reader.setVariable(LineReader.HISTORY_SIZE, 4);
+        reader.setOpt(LineReader.Option.HISTORY_TIMESTAMPED);
+        reader.setOpt(LineReader.Option.HISTORY_LAZY_LOAD);
+
+        DefaultHistory history = new DefaultHistory(reader);
+        assertEquals(4, history.size());
+        assertEquals(6, history.first());
+        assertEquals("cmd6xxx", history.get(6));
+        assertEquals("cmd7\nx", history.get(7));
+        assertEquals(1009, history.iterator(9).next().time().toEpochMilli());
+
+        history.add("foo");
+        assertEquals(4, history.size());
+        assertEquals(7, history.first());
+        assertEquals("foo", history.get(10));
+
+        history.save();
+        List<String> lines = Files.readAllLines(Paths.get("test"));
+        assertEquals(11, lines.size());
+        assertTrue(lines.get(10).endsWith(":foo"));
+    }
+
+    @Test
+    public void testLazyLoadEntries() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("cmd").append(10000 + i).append("\r\n");
+        }
+        Files.write(Paths.get("test"), sb.toString().getBytes(StandardCharsets.UTF_8));
+        reader.setVariable(LineReader.HISTORY_FILE, Paths.get("test"));
+        reader.setVariable(LineReader.HISTORY_SIZE, 3000);
+        reader.setOpt(LineReader.Option.HISTORY_LAZY_LOAD);
+
+        List<Integer> created = new ArrayList<>();
+        DefaultHistory history = new DefaultHistory(reader) {
+            @Override
+            protected EntryImpl createEntry(int index, Instant time, String line) {
+                created.add(index);
+                return super.createEntry(index, time, line);
+            }
+        };
+        assertEquals(3000, history.size());
+        assertEquals(2000, history.first());
+        assertEquals("cmd12000", history.get(2000));
+        assertEquals("cmd14999", history.get(4999));
+        assertEquals(Arrays.asList(2000, 4999), created);
+
+        // the file is not kept open
+        Files.delete(Paths.get("test"));
+        assertEquals("cmd13000", history.get(3000));
+    }
+
+    @Test
+    public void testTrimFile() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append(1000 + i).append(":cmd").append(i % 7 == 0 ? " dup " : Integer.toString(i % 1000)).append("\n");
+        }
+        Files.write(Paths.get("test"), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(5, HistoryTrimmer.trim(Paths.get("test"), 5, true));
+        List<String> lines = Files.readAllLines(Paths.get("test"));
+        assertEquals(Arrays.asList("100995:cmd dup ", "100996:cmd996", "100997:cmd997",
+                "100998:cmd998", "100999:cmd999"), lines);
+
+        Files.write(Paths.get("test"), "a\nb\n a\nc\nb\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, HistoryTrimmer.trim(Paths.get("test"), 100, false));
+        lines = Files.readAllLines(Paths.get("test"));
+        assertEquals(Arrays.asList(" a", "c", "b"), lines);
+
+        // empty lines are loaded as entries, except with timestamps
+        Files.write(Paths.get("test"), "\na\n\nb\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, HistoryTrimmer.trim(Paths.get("test"), 100, false));
+        lines = Files.readAllLines(Paths.get("test"));
+        assertEquals(Arrays.asList("a", "", "b"), lines);
+
+        Files.write(Paths.get("test"), "1:a\n\n2:b\n\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, HistoryTrimmer.trim(Paths.get("test"), 100, true));
+        lines = Files.readAllLines(Paths.get("test"));
+        assertEquals(Arrays.asList("1:a", "2:b"), lines);
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        reader.setVariable(LineReader.HISTORY_FILE, Paths.get("test"));
+        reader.setVariable(LineReader.HISTORY_FILE_SIZE, 20);
+        reader.setVariable(LineReader.HISTORY_SYNC, "commit");
+
+        DefaultHistory history = new DefaultHistory(reader);
+        for (int i = 0; i < 100; i++) {
+            history.add("cmd" + i);
+        }
+        history.save();
+        List<String> lines = Files.readAllLines(Paths.get("test"));
+        // the file is trimmed in the background, so it may have up to 25% more entries
+        assertTrue(lines.size() >= 20 && lines.size() <= 25);
+        assertTrue(lines.get(lines.size() - 1).endsWith(":cmd99"));
+
+        history.add("foo");
+        history.save();
+        lines = Files.readAllLines(Paths.get("test"));
+        assertTrue(lines.get(lines.size() - 1).endsWith(":foo"));
+    }
+
+    @Test
+    public void testJournalFailure() throws Exception {
+        StringBuilder written = new StringBuilder();
+        HistoryJournal journal = new HistoryJournal(new HistoryJournal.Sink() {
+            @Override
+            public void write(String text, boolean force) {
+                written.append(text);
+            }
+
+            @Override
+            public void close(boolean force) {
+            }
+        }, HistoryJournal.Sync.CLOSE);
+        journal.append("a\n");
+        journal.run(() -> {
+            throw new IllegalStateException("failure");
+        });
+        journal.append("b\n");
+        // the journal is still running after an unchecked exception
+        journal.close();
+        assertEquals("a\nb\n", written.toString());
+    }
+
+    @Test
+    public void testJournalWriteFailure() throws Exception {
+        StringBuilder written = new StringBuilder();
+        CountDownLatch failed = new CountDownLatch(1);
+        HistoryJournal journal = new HistoryJournal(new HistoryJournal.Sink() {
+            @Override
+            public void write(String text, boolean force) throws IOException {
+                if (failed.getCount() > 0) {
+                    failed.countDown();
+                    throw new IOException("failure");
+                }
+                written.append(text);
+            }
+
+            @Override
+            public void close(boolean force) {
+            }
+        }, HistoryJournal.Sync.CLOSE);
+        journal.append("a\n");
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        journal.append("b\n");
+        // the entries which failed to be written are written with the next ones
+        journal.close();
+        assertEquals("a\nb\n", written.toString());
+    }
+
+    @Test
+    public void testSharedHistory() throws Exception {
+        reader.setVariable(LineReader.HISTORY_FILE, Paths.get("test"));
+        reader.setVariable(LineReader.HISTORY_FILE_SIZE, 4);
+        reader.setOpt(LineReader.Option.HISTORY_SHARED);
+        try {
+            DefaultHistory h1 = new DefaultHistory(reader);
+            DefaultHistory h2 = new DefaultHistory(reader);
+            // incremental saves are written in the background until saved
+            h1.add("a");
+            h1.save();
+            h2.add("b");
+            h2.save();
+            h1.add("c");
+            h1.save();
+            assertEquals(3, h1.size());
+            assertEquals(2, h2.size());
+
+            // the entries of other sessions are read when navigating
+            h2.moveToEnd();
+            assertTrue(h2.previous());
+            assertEquals(3, h2.size());
+            assertEquals("c", h2.current());
+
+            // the file is compacted in the background
+            for (int i = 0; i < 10; i++) {
+                h1.add("x" + i);
+            }
+            h1.save();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.readAllLines(Paths.get("test")).size() == 13 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.readAllLines(Paths.get("test")).size() < 13);
+            h2.add("y");
+            h2.moveToEnd();
+            assertTrue(h2.previous());
+            assertEquals("y", h2.current());
+            assertTrue(h2.previous());
+            assertEquals("x9", h2.current());
+        } finally {
+            reader.unsetOpt(LineReader.Option.HISTORY_SHARED);
+            Files.deleteIfExists(Paths.get("test.lock"));
+        }
+    }
+
     @Test
     public void testFileHistory() throws Exception {
         reader.setVariable(LineReader.HISTORY_FILE, Paths.get("test"));
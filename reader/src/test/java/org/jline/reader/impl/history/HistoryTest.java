@@ -22,8 +22,11 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -93,6 +96,76 @@ public class HistoryTest extends ReaderTestSupport
         assertEquals("f", history.get(5));
     }
 
+    @Test
+    public void testWrapAround() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 20);
+
+        for (int i = 0; i < 100; i++) {
+            history.add(Integer.toString(i));
+        }
+
+        assertEquals(20, history.size());
+        assertEquals(80, history.first());
+        assertEquals(99, history.last());
+        for (int i = 80; i < 100; i++) {
+            assertEquals(Integer.toString(i), history.get(i));
+        }
+        assertEquals(90, history.iterator(90).next().index());
+        assertTrue(history.moveTo(85));
+        assertEquals("85", history.current());
+        history.moveToEnd();
+        assertTrue(history.previous());
+        assertEquals("99", history.current());
+    }
+
+    @Test
+    public void testCandidates() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 4);
+
+        history.add("git commit");
+        history.add("ls -l");
+        history.add("Git Checkout");
+
+        assertArrayEquals(new int[] { 0, 2 }, history.candidates("git", null));
+        assertArrayEquals(new int[] { 2 }, history.candidates("git ch", history.candidates("git", null)));
+        assertArrayEquals(new int[0], history.candidates("foo", null));
+        assertNull(history.candidates("gi", null));
+
+        history.add("git push");
+        history.add("vi");
+        history.add("git pull");
+
+        assertArrayEquals(new int[] { 2, 3, 5 }, history.candidates("GIT", null));
+        assertArrayEquals(new int[] { 3, 5 }, history.candidates("t pu", null));
+    }
+
+    @Test
+    public void testSearchPrefix() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 50);
+        Random random = new Random(0);
+        String[] words = { "git", "Git", "grep", "gradle build --offline --parallel", "gradle build --offline --quiet", "ls" };
+        for (int i = 0; i < 500; i++) {
+            history.add(words[random.nextInt(words.length)] + " " + random.nextInt(5));
+            for (String prefix : new String[] { "g", "gi", "git", "GIT", "gr", "gradle b", "gradle build --offline --q", "ls 1", "x" }) {
+                for (boolean ci : new boolean[] { false, true }) {
+                    for (int from = history.first() - 1; from <= history.last() + 1; from++) {
+                        assertEquals(linearSearch(prefix, from, true, ci), history.searchPrefix(prefix, from, true, ci));
+                        assertEquals(linearSearch(prefix, from, false, ci), history.searchPrefix(prefix, from, false, ci));
+                    }
+                }
+            }
+        }
+    }
+
+    private int linearSearch(String prefix, int from, boolean backward, boolean ci) {
+        for (int i = backward ? from - 1 : from; i >= history.first() && i <= history.last() || (backward ? i > history.last() : i < history.first()); i += backward ? -1 : 1) {
+            if (i >= history.first() && i <= history.last() && history.get(i).regionMatches(ci, 0, prefix, 0, prefix.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Test
     public void testTrimIterate() throws IOException {
         Path histFile = Files.createTempFile(null, null);
@@ -119,6 +192,7 @@ public class HistoryTest extends ReaderTestSupport
         assertEquals("e", history.get(4));
         assertEquals(3, history.iterator().next().index());
 
+        history.save();
         try (BufferedReader reader = Files.newBufferedReader(histFile)) {
             // We should have 5 lines: c, d, e, f, g
             // The history file was trimmed while adding f, but we later added g without trimming
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.history;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class LineTableTest {
+
+    @Test
+    public void testIntern() {
+        LineTable table = new LineTable();
+        int a = table.intern("ls -l");
+        int b = table.intern("cd /tmp");
+        assertNotEquals(a, b);
+        assertEquals(a, table.intern("ls -l"));
+        assertEquals(2, table.size());
+        assertEquals("ls -l", table.get(a));
+        assertEquals("cd /tmp", table.get(b));
+
+        table.release(a);
+        assertEquals(2, table.size());
+        table.release(a);
+        assertEquals(1, table.size());
+        assertEquals(b, table.intern("cd /tmp"));
+        assertEquals("été", table.get(table.intern("été")));
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        // Simulate a history evicting its oldest entries
+        LineTable table = new LineTable();
+        Random random = new Random(0);
+        Deque<Integer> ids = new ArrayDeque<>();
+        Deque<String> lines = new ArrayDeque<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            String line = "cmd" + random.nextInt(300);
+            int id = table.intern(line);
+            Integer prev = expected.putIfAbsent(line, id);
+            if (prev != null) {
+                assertEquals(prev.intValue(), id);
+            }
+            ids.addLast(id);
+            lines.addLast(line);
+            if (ids.size() > 500) {
+                String old = lines.removeFirst();
+                table.release(ids.removeFirst());
+                if (!lines.contains(old)) {
+                    expected.remove(old);
+                }
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<String, Integer> e : expected.entrySet()) {
+            assertEquals(e.getKey(), table.get(e.getValue()));
+            assertEquals(e.getValue().intValue(), table.intern(e.getKey()));
+        }
+    }
+
+}
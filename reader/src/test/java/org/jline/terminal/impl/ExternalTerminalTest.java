@@ -119,6 +119,33 @@ public class ExternalTerminalTest {
         th.join();
     }
 
+    @Test
+    public void testRawInputWithSignals() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineDisciplineTerminal console = new LineDisciplineTerminal("foo", "ansi", out, StandardCharsets.UTF_8);
+        Attributes attributes = console.enterRawMode();
+        Attributes raw = console.getAttributes();
+        raw.setLocalFlag(LocalFlag.ISIG, true);
+        raw.setControlChar(ControlChar.VINTR, 3);
+        console.setAttributes(raw);
+        int[] interrupts = new int[1];
+        console.handle(Terminal.Signal.INT, s -> interrupts[0]++);
+
+        console.processInputBytes(new byte[] { 'a', '\r', 'b', 3, 'c', '\n' });
+        assertEquals(1, interrupts[0]);
+        StringBuilder sb = new StringBuilder();
+        while (console.reader().peek(1) >= 0) {
+            sb.append((char) console.reader().read());
+        }
+        assertEquals("a\rbc\n", sb.toString());
+        assertEquals(0, out.size());
+
+        console.setAttributes(attributes);
+        console.processInputBytes(new byte[] { 'd', '\r' });
+        assertEquals('d', console.reader().read());
+        assertEquals('\n', console.reader().read());
+    }
+
     @Test
     public void testCursorPosition() throws IOException  {
         PipedInputStream in = new PipedInputStream();
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.TerminalRecording;
+import org.jline.utils.TerminalRecording.EventType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TerminalReplayTest {
+
+    @Test
+    public void testRecordAndReplay() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineDisciplineTerminal console = new LineDisciplineTerminal("foo", "ansi", out, StandardCharsets.UTF_8);
+        console.setSize(new Size(80, 24));
+        ByteArrayOutputStream rec = new ByteArrayOutputStream();
+        RecordingTerminal terminal = new RecordingTerminal(console, rec);
+        console.processInputBytes("echo\rfoo\r".getBytes());
+        terminal.setSize(new Size(100, 30));
+
+        LineReader reader = LineReaderBuilder.builder().terminal(terminal).build();
+        assertEquals("echo", reader.readLine("> "));
+        assertEquals("foo", reader.readLine("> "));
+        terminal.close();
+
+        TerminalRecording recording = TerminalRecording.read(new ByteArrayInputStream(rec.toByteArray()));
+        assertEquals("ansi", recording.getType());
+        assertEquals(StandardCharsets.UTF_8, recording.getEncoding());
+        assertEquals(new Size(80, 24), recording.getSize());
+        StringBuilder input = new StringBuilder();
+        long output = 0;
+        long time = 0;
+        for (TerminalRecording.Event event : recording.getEvents()) {
+            assertTrue(event.getTime() >= time);
+            time = event.getTime();
+            if (event.getType() == EventType.Input) {
+                input.append(new String(event.getData(), StandardCharsets.UTF_8));
+            } else if (event.getType() == EventType.Output) {
+                output += event.getData().length;
+            }
+        }
+        assertEquals("echo\nfoo\n", input.toString());
+        assertEquals(EventType.Size, recording.getEvents().get(0).getType());
+        assertEquals(new Size(100, 30), recording.getEvents().get(0).getSize());
+        assertTrue(output > 0);
+
+        AtomicReference<String> lines = new AtomicReference<>("");
+        TerminalReplay.Report report = new TerminalReplay(recording).replay(t -> {
+            LineReader r = LineReaderBuilder.builder().terminal(t).build();
+            lines.set(r.readLine("> "));
+            lines.set(lines.get() + "," + r.readLine("> "));
+        });
+        assertEquals("echo,foo", lines.get());
+        assertTrue(report.getEvents().size() > 0);
+        assertTrue(report.getOutputBytes() > 0);
+        assertTrue(report.getLatencyPercentile(100) >= report.getLatencyPercentile(50));
+    }
+
+    @Test
+    public void testRecordSignal() throws IOException {
+        LineDisciplineTerminal console = new LineDisciplineTerminal("foo", "ansi", new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        ByteArrayOutputStream rec = new ByteArrayOutputStream();
+        RecordingTerminal terminal = new RecordingTerminal(console, rec);
+        int[] count = new int[1];
+        terminal.handle(Terminal.Signal.INT, s -> count[0]++);
+        console.processInputByte(3);
+        terminal.close();
+        assertEquals(1, count[0]);
+
+        TerminalRecording recording = TerminalRecording.read(new ByteArrayInputStream(rec.toByteArray()));
+        assertEquals(1, recording.getEvents().size());
+        assertEquals(Terminal.Signal.INT, recording.getEvents().get(0).getSignal());
+
+        // The signal ordinal is the last byte of the recording
+        byte[] corrupt = rec.toByteArray();
+        corrupt[corrupt.length - 1] = 0x7f;
+        try {
+            TerminalRecording.read(new ByteArrayInputStream(corrupt));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("Invalid signal: 127", e.getMessage());
+        }
+    }
+
+}
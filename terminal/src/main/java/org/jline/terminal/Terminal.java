@@ -17,6 +17,7 @@ import java.nio.charset.Charset;
 import java.util.function.IntConsumer;
 import java.util.function.IntSupplier;
 
+import org.jline.terminal.impl.MouseSupport;
 import org.jline.terminal.impl.NativeSignalHandler;
 import org.jline.utils.InfoCmp.Capability;
 import org.jline.utils.NonBlockingReader;
@@ -266,12 +267,30 @@ public interface Terminal extends Closeable, Flushable {
      * Mouse events will be reported by writing the {@link Capability#key_mouse} to the input stream.
      * When this character sequence is detected, the {@link #readMouseEvent()} method can be
      * called to actually read the corresponding mouse event.
+     * The SGR extended mouse reports are not enabled by this method,
+     * see {@link #trackMouse(MouseTracking, boolean)}.
      *
      * @param tracking the mouse tracking mode
      * @return <code>true</code> if mouse tracking is supported
      */
     boolean trackMouse(MouseTracking tracking);
 
+    /**
+     * Change the mouse tracking mode, optionally enabling the SGR extended mouse reports.
+     * Those reports are announced by the <code>CSI &lt;</code> sequence instead of the
+     * {@link Capability#key_mouse}, and they must be read using
+     * {@link #readMouseEvent(IntSupplier, String)} with the detected sequence.
+     * Terminals which do not support them simply ignore the <code>sgr</code> flag.
+     *
+     * @param tracking the mouse tracking mode
+     * @param sgr whether SGR extended mouse reports should be enabled
+     * @return <code>true</code> if mouse tracking is supported
+     * @see #trackMouse(MouseTracking)
+     */
+    default boolean trackMouse(MouseTracking tracking, boolean sgr) {
+        return trackMouse(tracking);
+    }
+
     /**
      * Read a MouseEvent from the terminal input stream.
      * Such an event must have been detected by scanning the terminal's {@link Capability#key_mouse}
@@ -290,6 +309,22 @@ public interface Terminal extends Closeable, Flushable {
      */
     MouseEvent readMouseEvent(IntSupplier reader);
 
+    /**
+     * Read a MouseEvent from the given input stream, the given prefix being the key
+     * sequence which has been detected, either the {@link Capability#key_mouse} or
+     * the SGR extended mouse prefix <code>CSI &lt;</code>.
+     *
+     * @param reader the input supplier
+     * @param prefix the detected key sequence
+     * @return the decoded mouse event
+     * @see #trackMouse(MouseTracking, boolean)
+     */
+    default MouseEvent readMouseEvent(IntSupplier reader, String prefix) {
+        return MouseSupport.isSgr(prefix)
+                ? MouseSupport.readMouse(reader, null, prefix)
+                : readMouseEvent(reader);
+    }
+
     /**
      * Returns <code>true</code> if the terminal has support for focus tracking.
      * @return whether focus tracking is supported by the terminal
@@ -214,6 +214,11 @@ public abstract class AbstractTerminal implements Terminal {
         return MouseSupport.trackMouse(this, tracking);
     }
 
+    @Override
+    public boolean trackMouse(MouseTracking tracking, boolean sgr) {
+        return MouseSupport.trackMouse(this, tracking, sgr);
+    }
+
     @Override
     public MouseEvent readMouseEvent() {
         return lastMouseEvent = MouseSupport.readMouse(this, lastMouseEvent);
@@ -224,6 +229,11 @@ public abstract class AbstractTerminal implements Terminal {
         return lastMouseEvent = MouseSupport.readMouse(reader, lastMouseEvent);
     }
 
+    @Override
+    public MouseEvent readMouseEvent(IntSupplier reader, String prefix) {
+        return lastMouseEvent = MouseSupport.readMouse(reader, lastMouseEvent, prefix);
+    }
+
     @Override
     public boolean hasFocusSupport() {
         return type != null && type.startsWith("xterm");
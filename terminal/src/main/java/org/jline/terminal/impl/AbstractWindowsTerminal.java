@@ -516,6 +516,11 @@ public abstract class AbstractWindowsTerminal extends AbstractTerminal {
         return true;
     }
 
+    @Override
+    public boolean trackMouse(MouseTracking tracking, boolean sgr) {
+        return trackMouse(tracking);
+    }
+
     protected abstract int getConsoleOutputCP();
 
     protected abstract int getConsoleMode();
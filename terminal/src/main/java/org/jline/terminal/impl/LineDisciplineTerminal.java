@@ -62,6 +62,14 @@ public class LineDisciplineTerminal extends AbstractTerminal {
 
     private static final int PIPE_SIZE = 1024;
 
+    /*
+     * Input processing flags, see inputFlags
+     */
+    private static final int INPUT_SIGNALS = 0x01;
+    private static final int INPUT_CR = 0x02;
+    private static final int INPUT_NL = 0x04;
+    private static final int INPUT_ECHO = 0x08;
+
     /*
      * Master output stream
      */
@@ -86,6 +94,13 @@ public class LineDisciplineTerminal extends AbstractTerminal {
     protected final Attributes attributes;
     protected final Size size;
 
+    /*
+     * Precomputed input processing mask and signal characters,
+     * refreshed each time the attributes are changed
+     */
+    private volatile int inputFlags;
+    private volatile int[] signalChars;
+
     public LineDisciplineTerminal(String name,
                                   String type,
                                   OutputStream masterOutput,
@@ -108,6 +123,7 @@ public class LineDisciplineTerminal extends AbstractTerminal {
         this.masterOutput = masterOutput;
         this.attributes = ExecPty.doGetAttr(DEFAULT_TERMINAL_ATTRIBUTES);
         this.size = new Size(160, 50);
+        updateInputFlags();
         parseInfoCmp();
     }
 
@@ -137,6 +153,36 @@ public class LineDisciplineTerminal extends AbstractTerminal {
 
     public void setAttributes(Attributes attr) {
         attributes.copy(attr);
+        updateInputFlags();
+    }
+
+    /**
+     * Compute the mask of input transformations required by the
+     * current attributes, so that raw input can be processed in bulk.
+     * Subclasses modifying the {@link #attributes} field directly
+     * must call this method afterwards.
+     */
+    protected void updateInputFlags() {
+        int flags = 0;
+        if (attributes.getLocalFlag(LocalFlag.ISIG)) {
+            flags |= INPUT_SIGNALS;
+        }
+        if (attributes.getInputFlag(InputFlag.IGNCR) || attributes.getInputFlag(InputFlag.ICRNL)) {
+            flags |= INPUT_CR;
+        }
+        if (attributes.getInputFlag(InputFlag.INLCR)) {
+            flags |= INPUT_NL;
+        }
+        if (attributes.getLocalFlag(LocalFlag.ECHO)) {
+            flags |= INPUT_ECHO;
+        }
+        signalChars = new int[] {
+                attributes.getControlChar(ControlChar.VINTR),
+                attributes.getControlChar(ControlChar.VQUIT),
+                attributes.getControlChar(ControlChar.VSUSP),
+                attributes.getControlChar(ControlChar.VSTATUS)
+        };
+        inputFlags = flags;
     }
 
     public Size getSize() {
@@ -190,8 +236,33 @@ public class LineDisciplineTerminal extends AbstractTerminal {
 
     public void processInputBytes(byte[] input, int offset, int length) throws IOException {
         boolean flushOut = false;
-        for (int i = 0; i < length; i++) {
-            flushOut |= doProcessInputByte(input[offset + i]);
+        int flags = inputFlags;
+        if ((flags & ~INPUT_SIGNALS) == 0) {
+            // Raw mode: no transformation nor echo, so copy the input in bulk,
+            // only breaking the chunk on signal characters
+            if ((flags & INPUT_SIGNALS) == 0) {
+                slaveInputPipe.write(input, offset, length);
+            } else {
+                int[] signals = signalChars;
+                int start = offset;
+                int end = offset + length;
+                for (int i = offset; i < end; i++) {
+                    if (isSignalChar(signals, input[i])) {
+                        if (i > start) {
+                            slaveInputPipe.write(input, start, i - start);
+                        }
+                        flushOut |= doProcessInputByte(input[i]);
+                        start = i + 1;
+                    }
+                }
+                if (end > start) {
+                    slaveInputPipe.write(input, start, end - start);
+                }
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                flushOut |= doProcessInputByte(input[offset + i]);
+            }
         }
         slaveInputPipe.flush();
         if (flushOut) {
@@ -199,6 +270,15 @@ public class LineDisciplineTerminal extends AbstractTerminal {
         }
     }
 
+    private static boolean isSignalChar(int[] signals, int c) {
+        for (int s : signals) {
+            if (c == s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected boolean doProcessInputByte(int c) throws IOException {
         if (attributes.getLocalFlag(LocalFlag.ISIG)) {
             if (c == attributes.getControlChar(ControlChar.VINTR)) {
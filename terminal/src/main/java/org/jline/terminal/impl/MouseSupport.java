@@ -10,6 +10,7 @@ package org.jline.terminal.impl;
 
 import org.jline.terminal.MouseEvent;
 import org.jline.terminal.Terminal;
+import org.jline.utils.Curses;
 import org.jline.utils.InfoCmp;
 import org.jline.utils.InputStreamReader;
 
@@ -17,29 +18,72 @@ import java.io.EOFException;
 import java.io.IOError;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.IntSupplier;
 
 public class MouseSupport {
 
+    /**
+     * The prefix of the SGR (1006) extended mouse reports,
+     * which are formatted as <code>CSI &lt; Cb ; Cx ; Cy M</code> for presses and motions
+     * and <code>CSI &lt; Cb ; Cx ; Cy m</code> for releases.
+     */
+    public static final String SGR_PREFIX = "\033[<";
+
     public static boolean hasMouseSupport(Terminal terminal) {
         return terminal.getStringCapability(InfoCmp.Capability.key_mouse) != null;
     }
 
+    /**
+     * Returns the key sequences announcing a mouse event, i.e. the
+     * {@link InfoCmp.Capability#key_mouse} sequence and the {@link #SGR_PREFIX},
+     * or an empty list if the terminal has no mouse support.
+     *
+     * @param terminal the terminal
+     * @return the mouse key sequences
+     */
+    public static List<String> keys(Terminal terminal) {
+        List<String> keys = new ArrayList<>();
+        String key = terminal.getStringCapability(InfoCmp.Capability.key_mouse);
+        if (key != null) {
+            keys.add(Curses.tputs(key));
+            keys.add(SGR_PREFIX);
+        }
+        return keys;
+    }
+
     public static boolean trackMouse(Terminal terminal, Terminal.MouseTracking tracking) {
+        return trackMouse(terminal, tracking, false);
+    }
+
+    /**
+     * Change the mouse tracking mode, optionally enabling the SGR (1006) extended
+     * reports, which are announced by the {@link #SGR_PREFIX} instead of the
+     * {@link InfoCmp.Capability#key_mouse} sequence.
+     *
+     * @param terminal the terminal
+     * @param tracking the mouse tracking mode
+     * @param sgr whether SGR extended reports should be enabled
+     * @return <code>true</code> if mouse tracking is supported
+     */
+    public static boolean trackMouse(Terminal terminal, Terminal.MouseTracking tracking, boolean sgr) {
         if (hasMouseSupport(terminal)) {
+            String ext = sgr ? "\033[?1005h\033[?1006h" : "\033[?1005h";
             switch (tracking) {
                 case Off:
-                    terminal.writer().write("\033[?1000l");
+                    terminal.writer().write("\033[?1006l\033[?1000l");
                     break;
                 case Normal:
-                    terminal.writer().write("\033[?1005h\033[?1000h");
+                    terminal.writer().write(ext + "\033[?1000h");
                     break;
                 case Button:
-                    terminal.writer().write("\033[?1005h\033[?1002h");
+                    terminal.writer().write(ext + "\033[?1002h");
                     break;
                 case Any:
-                    terminal.writer().write("\033[?1005h\033[?1003h");
+                    terminal.writer().write(ext + "\033[?1003h");
                     break;
             }
             terminal.flush();
@@ -53,12 +97,150 @@ public class MouseSupport {
         return readMouse(() -> readExt(terminal), last);
     }
 
-    public static MouseEvent readMouse(IntSupplier reader, MouseEvent last) {
-        int cb = reader.getAsInt() - ' ';
-        int cx = reader.getAsInt() - ' ' - 1;
-        int cy = reader.getAsInt() - ' ' - 1;
+    public static MouseEvent readMouse(Terminal terminal, MouseEvent last, String prefix) {
+        return readMouse(() -> readExt(terminal), last, prefix);
+    }
+
+    /**
+     * Read a mouse event following the given prefix, which is the key sequence
+     * that has been detected in the input stream: the {@link #SGR_PREFIX} for
+     * SGR extended reports, or the {@link InfoCmp.Capability#key_mouse} sequence.
+     *
+     * @param reader the input supplier
+     * @param last the previous mouse event
+     * @param prefix the key sequence which has been read
+     * @return the decoded mouse event
+     */
+    public static MouseEvent readMouse(IntSupplier reader, MouseEvent last, String prefix) {
+        if (isSgr(prefix)) {
+            return readSgr(reader);
+        } else {
+            return readMouse(reader, last);
+        }
+    }
+
+    /**
+     * Returns whether the given key sequence announces an SGR extended mouse report.
+     *
+     * @param prefix the key sequence which has been read
+     * @return <code>true</code> if the sequence ends with the {@link #SGR_PREFIX}
+     */
+    public static boolean isSgr(String prefix) {
+        return prefix != null && prefix.endsWith(SGR_PREFIX.substring(1));
+    }
+
+    /**
+     * Collapses the SGR motion events already queued in the input into the given one.
+     *
+     * While the event is a motion, the following complete SGR reports are read from
+     * the lookahead supplier, which must return a negative value when no character
+     * is immediately available.  Consecutive motions with the same button and modifiers
+     * replace the event, so that only the latest position is dispatched.  Any other
+     * input, including incomplete or non collapsible reports, is given back to the
+     * <code>unread</code> consumer.
+     *
+     * @param event the event which has been read
+     * @param lookahead the supplier of already queued characters
+     * @param unread the consumer for characters to push back in front of the input
+     * @return the latest collapsed event
+     */
+    public static MouseEvent coalesce(MouseEvent event, IntSupplier lookahead, Consumer<String> unread) {
+        StringBuilder sb = new StringBuilder();
+        while (isMotion(event)) {
+            boolean complete = false;
+            int c;
+            while (!complete && (c = lookahead.getAsInt()) >= 0) {
+                sb.appendCodePoint(c);
+                int l = sb.length();
+                if (l <= SGR_PREFIX.length()) {
+                    if (c != SGR_PREFIX.charAt(l - 1)) {
+                        break;
+                    }
+                } else if (c == 'M' || c == 'm') {
+                    complete = true;
+                } else if ((c < '0' || c > '9') && c != ';') {
+                    break;
+                }
+            }
+            if (!complete) {
+                break;
+            }
+            int[] index = { SGR_PREFIX.length() };
+            MouseEvent next = readSgr(() -> sb.charAt(index[0]++));
+            if (!isMotion(next)
+                    || next.getButton() != event.getButton()
+                    || !next.getModifiers().equals(event.getModifiers())) {
+                break;
+            }
+            event = next;
+            sb.setLength(0);
+        }
+        if (sb.length() > 0) {
+            unread.accept(sb.toString());
+        }
+        return event;
+    }
+
+    private static boolean isMotion(MouseEvent event) {
+        return event.getType() == MouseEvent.Type.Moved || event.getType() == MouseEvent.Type.Dragged;
+    }
+
+    private static MouseEvent readSgr(IntSupplier reader) {
+        int cb = 0;
+        int cx = 0;
+        int cy = 0;
+        int field = 0;
+        int c;
+        while (true) {
+            c = reader.getAsInt();
+            if (c >= '0' && c <= '9') {
+                int d = c - '0';
+                if (field == 0) {
+                    cb = cb * 10 + d;
+                } else if (field == 1) {
+                    cx = cx * 10 + d;
+                } else {
+                    cy = cy * 10 + d;
+                }
+            } else if (c == ';') {
+                field++;
+            } else {
+                break;
+            }
+        }
         MouseEvent.Type type;
         MouseEvent.Button button;
+        EnumSet<MouseEvent.Modifier> modifiers = modifiers(cb);
+        if ((cb & 64) == 64) {
+            type = MouseEvent.Type.Wheel;
+            button = (cb & 1) == 1 ? MouseEvent.Button.WheelDown : MouseEvent.Button.WheelUp;
+        } else {
+            button = button(cb & 3);
+            if ((cb & 32) == 32) {
+                type = button == MouseEvent.Button.NoButton ? MouseEvent.Type.Moved : MouseEvent.Type.Dragged;
+            } else if (c == 'm') {
+                type = MouseEvent.Type.Released;
+            } else {
+                type = MouseEvent.Type.Pressed;
+            }
+        }
+        return new MouseEvent(type, button, modifiers, Math.max(0, cx - 1), Math.max(0, cy - 1));
+    }
+
+    private static MouseEvent.Button button(int b) {
+        switch (b) {
+            case 0:
+                return MouseEvent.Button.Button1;
+            case 1:
+                return MouseEvent.Button.Button2;
+            case 2:
+                return MouseEvent.Button.Button3;
+            default:
+                return MouseEvent.Button.NoButton;
+        }
+    }
+
+    private static EnumSet<MouseEvent.Modifier> modifiers(int cb) {
         EnumSet<MouseEvent.Modifier> modifiers = EnumSet.noneOf(MouseEvent.Modifier.class);
         if ((cb & 4) == 4) {
             modifiers.add(MouseEvent.Modifier.Shift);
@@ -69,6 +251,16 @@ public class MouseSupport {
         if ((cb & 16) == 16) {
             modifiers.add(MouseEvent.Modifier.Control);
         }
+        return modifiers;
+    }
+
+    public static MouseEvent readMouse(IntSupplier reader, MouseEvent last) {
+        int cb = reader.getAsInt() - ' ';
+        int cx = reader.getAsInt() - ' ' - 1;
+        int cy = reader.getAsInt() - ' ' - 1;
+        MouseEvent.Type type;
+        MouseEvent.Button button;
+        EnumSet<MouseEvent.Modifier> modifiers = modifiers(cb);
         if ((cb & 64) == 64) {
             type = MouseEvent.Type.Wheel;
             button = (cb & 1) == 1 ? MouseEvent.Button.WheelDown : MouseEvent.Button.WheelUp;
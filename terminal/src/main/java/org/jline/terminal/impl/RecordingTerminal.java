@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.function.IntConsumer;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Cursor;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.NonBlocking;
+import org.jline.utils.NonBlockingInputStream;
+import org.jline.utils.NonBlockingReader;
+import org.jline.utils.TerminalRecording;
+
+/**
+ * A terminal wrapper recording the session into a {@link TerminalRecording}.
+ *
+ * The input bytes read by the application, the output bytes written by
+ * the application, the size changes and the signals delivered to the
+ * application handlers are all recorded with their timestamps.
+ * Closing this terminal closes the recording and the underlying terminal.
+ *
+ * @see TerminalReplay
+ */
+public class RecordingTerminal extends AbstractTerminal {
+
+    protected final Terminal terminal;
+    protected final TerminalRecording.Writer recorder;
+    protected final NonBlockingInputStream input;
+    protected final NonBlockingReader reader;
+    protected final OutputStream output;
+    protected final PrintWriter writer;
+
+    public RecordingTerminal(Terminal terminal, OutputStream recording) throws IOException {
+        super(terminal.getName(), terminal.getType(), terminal.encoding(), SignalHandler.SIG_DFL);
+        this.terminal = terminal;
+        this.recorder = new TerminalRecording.Writer(recording, getType(), encoding(), terminal.getSize());
+        this.input = new RecordingInputStream(NonBlocking.nonBlocking(getName(), terminal.input()));
+        this.reader = NonBlocking.nonBlocking(getName(), input, encoding());
+        this.output = new RecordingOutputStream(terminal.output());
+        this.writer = new PrintWriter(new OutputStreamWriter(output, encoding()));
+        parseInfoCmp();
+    }
+
+    public Terminal getTerminal() {
+        return terminal;
+    }
+
+    @Override
+    public SignalHandler handle(Signal signal, SignalHandler handler) {
+        SignalHandler prev = super.handle(signal, handler);
+        if (handler == SignalHandler.SIG_DFL || handler == SignalHandler.SIG_IGN) {
+            terminal.handle(signal, handler);
+        } else {
+            terminal.handle(signal, this::signal);
+        }
+        return prev;
+    }
+
+    @Override
+    public void raise(Signal signal) {
+        terminal.raise(signal);
+    }
+
+    protected void signal(Signal signal) {
+        try {
+            if (signal == Signal.WINCH) {
+                recorder.size(terminal.getSize());
+            }
+            recorder.signal(signal);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        super.raise(signal);
+    }
+
+    @Override
+    public NonBlockingReader reader() {
+        return reader;
+    }
+
+    @Override
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public InputStream input() {
+        return input;
+    }
+
+    @Override
+    public OutputStream output() {
+        return output;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return terminal.getAttributes();
+    }
+
+    @Override
+    public void setAttributes(Attributes attr) {
+        terminal.setAttributes(attr);
+    }
+
+    @Override
+    public Size getSize() {
+        return terminal.getSize();
+    }
+
+    @Override
+    public void setSize(Size size) {
+        try {
+            recorder.size(size);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        terminal.setSize(size);
+    }
+
+    @Override
+    public Cursor getCursorPosition(IntConsumer discarded) {
+        return CursorSupport.getCursorPosition(this, discarded);
+    }
+
+    @Override
+    public boolean canPauseResume() {
+        return terminal.canPauseResume();
+    }
+
+    @Override
+    public void pause() {
+        terminal.pause();
+    }
+
+    @Override
+    public void pause(boolean wait) throws InterruptedException {
+        terminal.pause(wait);
+    }
+
+    @Override
+    public void resume() {
+        terminal.resume();
+    }
+
+    @Override
+    public boolean paused() {
+        return terminal.paused();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        try {
+            writer.flush();
+            recorder.close();
+        } finally {
+            terminal.close();
+        }
+    }
+
+    private class RecordingInputStream extends NonBlockingInputStream {
+
+        private final NonBlockingInputStream in;
+
+        RecordingInputStream(NonBlockingInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(long timeout, boolean isPeek) throws IOException {
+            int c = in.read(timeout, isPeek);
+            if (c >= 0 && !isPeek) {
+                recorder.input(new byte[] { (byte) c }, 0, 1);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int nb = in.read(b, off, len);
+            if (nb > 0) {
+                recorder.input(b, off, nb);
+            }
+            return nb;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void shutdown() {
+            in.shutdown();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private class RecordingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        RecordingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            recorder.output(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            recorder.output(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.TerminalRecording;
+import org.jline.utils.TerminalRecording.Event;
+
+/**
+ * Replays a {@link TerminalRecording} into an application running
+ * in a {@link LineDisciplineTerminal}.
+ *
+ * The application is started in its own thread and the recorded input,
+ * size changes and signals are fed to the terminal, either with the
+ * original timing or as fast as possible.  After each event, the replay
+ * waits for the application to go idle again, i.e. the input has been
+ * consumed and the application thread is waiting for more, and records
+ * the elapsed time as the processing latency of the event.
+ *
+ * For example, to replay a session into a line reader:
+ * <pre>
+ * TerminalReplay.Report report = new TerminalReplay(recording)
+ *     .replay(t -&gt; LineReaderBuilder.builder().terminal(t).build().readLine("&gt; "));
+ * </pre>
+ *
+ * @see RecordingTerminal
+ */
+public class TerminalReplay {
+
+    @FunctionalInterface
+    public interface Application {
+        void run(Terminal terminal) throws Exception;
+    }
+
+    public static class Report {
+
+        private final List<Event> events;
+        private final long[] latencies;
+        private final long outputBytes;
+        private final long duration;
+
+        Report(List<Event> events, long[] latencies, long outputBytes, long duration) {
+            this.events = Collections.unmodifiableList(events);
+            this.latencies = latencies;
+            this.outputBytes = outputBytes;
+            this.duration = duration;
+        }
+
+        /**
+         * The replayed events, output events excluded.
+         *
+         * @return the replayed events
+         */
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        /**
+         * The processing latency in nanoseconds of each replayed event.
+         *
+         * @param index the event index
+         * @return the latency of the event
+         */
+        public long getLatency(int index) {
+            return latencies[index];
+        }
+
+        /**
+         * The latency in nanoseconds below which the given percentage of events
+         * have been processed.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the latency for the percentile
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        public long getTotalLatency() {
+            long total = 0;
+            for (long l : latencies) {
+                total += l;
+            }
+            return total;
+        }
+
+        /**
+         * The total number of bytes written by the application.
+         *
+         * @return the number of output bytes
+         */
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+
+        /**
+         * The wall clock duration of the replay in nanoseconds.
+         *
+         * @return the replay duration
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return "Report[" +
+                    "events=" + events.size() +
+                    ", outputBytes=" + outputBytes +
+                    ", duration=" + TimeUnit.NANOSECONDS.toMillis(duration) + "ms" +
+                    ", p50=" + TimeUnit.NANOSECONDS.toMicros(getLatencyPercentile(50)) + "us" +
+                    ", p99=" + TimeUnit.NANOSECONDS.toMicros(getLatencyPercentile(99)) + "us" +
+                    ", max=" + TimeUnit.NANOSECONDS.toMicros(getLatencyPercentile(100)) + "us" +
+                    ']';
+        }
+    }
+
+    private final TerminalRecording recording;
+    private boolean realTime;
+    private long idleTimeout = TimeUnit.SECONDS.toNanos(1);
+
+    public TerminalReplay(TerminalRecording recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Replay the events with the recorded timing instead of as fast as possible.
+     *
+     * @param realTime <code>true</code> to use the original timing
+     * @return this replay
+     */
+    public TerminalReplay realTime(boolean realTime) {
+        this.realTime = realTime;
+        return this;
+    }
+
+    /**
+     * The maximum time to wait for the application to process an event.
+     *
+     * @param timeout the timeout
+     * @param unit the timeout unit
+     * @return this replay
+     */
+    public TerminalReplay idleTimeout(long timeout, TimeUnit unit) {
+        this.idleTimeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    public Report replay(Application application) throws IOException {
+        CountingOutputStream masterOutput = new CountingOutputStream();
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal(
+                "replay", recording.getType(), masterOutput, recording.getEncoding());
+        terminal.setSize(recording.getSize());
+        AtomicBoolean closing = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                application.run(terminal);
+            } catch (Throwable t) {
+                // Errors caused by closing the terminal at the end of the replay are expected
+                if (!closing.get()) {
+                    failure.set(t);
+                }
+            }
+        }, "replay");
+        thread.setDaemon(true);
+        List<Event> replayed = new ArrayList<>();
+        List<Long> latencies = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            thread.start();
+            waitIdle(terminal, thread);
+            long base = System.nanoTime();
+            for (Event event : recording.getEvents()) {
+                if (event.getType() == TerminalRecording.EventType.Output) {
+                    continue;
+                }
+                if (!thread.isAlive()) {
+                    break;
+                }
+                if (realTime) {
+                    long delay = base + event.getTime() - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                }
+                long t0 = System.nanoTime();
+                switch (event.getType()) {
+                    case Input:
+                        terminal.processInputBytes(event.getData());
+                        break;
+                    case Size:
+                        terminal.setSize(event.getSize());
+                        break;
+                    case Signal:
+                        terminal.raise(event.getSignal());
+                        break;
+                }
+                waitIdle(terminal, thread);
+                replayed.add(event);
+                latencies.add(System.nanoTime() - t0);
+            }
+        } finally {
+            closing.set(true);
+            terminal.close();
+        }
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(idleTimeout));
+        } catch (InterruptedException e) {
+            throw (IOException) new InterruptedIOException().initCause(e);
+        }
+        if (failure.get() != null) {
+            throw new IOException("Replayed application failed", failure.get());
+        }
+        long[] lat = new long[latencies.size()];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = latencies.get(i);
+        }
+        return new Report(replayed, lat, masterOutput.count, System.nanoTime() - start);
+    }
+
+    /**
+     * Wait until the application has consumed its input and is blocked
+     * waiting for more, or until the idle timeout expires.
+     */
+    private void waitIdle(Terminal terminal, Thread thread) throws IOException {
+        long deadline = System.nanoTime() + idleTimeout;
+        int stable = 0;
+        while (stable < 2 && System.nanoTime() < deadline) {
+            Thread.State state = thread.getState();
+            if (state == Thread.State.TERMINATED) {
+                return;
+            }
+            if (terminal.input().available() == 0
+                    && (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING)) {
+                stable++;
+            } else {
+                stable = 0;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private volatile long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+}
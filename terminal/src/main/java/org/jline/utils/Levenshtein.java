@@ -45,10 +45,82 @@ import java.util.Map;
  */
 public class Levenshtein {
 
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[3][32]);
+
     public static int distance(CharSequence lhs, CharSequence rhs) {
         return distance(lhs, rhs, 1, 1, 1, 1);
     }
 
+    /**
+     * Computes the distance between two sequences if it does not exceed the
+     * given bound, with all the edit operations costing one.
+     *
+     * This computes the restricted distance (optimal string alignment), which
+     * only differs from {@link #distance(CharSequence, CharSequence)} when the
+     * characters of a swapped pair are edited again, so both are the same when
+     * the distance is at most one.  Only the cells within <code>max</code> of
+     * the diagonal are computed, the computation stops as soon as the bound is
+     * exceeded, and the rows are reused between calls on the same thread.
+     *
+     * @param lhs the source sequence
+     * @param rhs the target sequence
+     * @param max the maximum distance of interest
+     * @return the distance, or <code>max + 1</code> if it is greater than <code>max</code>
+     */
+    public static int distance(CharSequence lhs, CharSequence rhs, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative bound: " + max);
+        }
+        int n = lhs.length();
+        int m = rhs.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[][] rows = ROWS.get();
+        if (rows[0].length < m + 2) {
+            rows = new int[3][Math.max(m + 2, rows[0].length * 2)];
+            ROWS.set(rows);
+        }
+        int[] prev2 = rows[0];
+        int[] prev = rows[1];
+        int[] curr = rows[2];
+        int out = max + 1;
+        for (int j = 0; j <= Math.min(m, max); j++) {
+            prev[j] = j;
+        }
+        if (max < m) {
+            prev[max + 1] = out;
+        }
+        for (int i = 1; i <= n; i++) {
+            int lo = Math.max(1, i - max);
+            int hi = Math.min(m, i + max);
+            char c = lhs.charAt(i - 1);
+            curr[lo - 1] = lo == 1 ? i : out;
+            int min = curr[lo - 1];
+            for (int j = lo; j <= hi; j++) {
+                char d = rhs.charAt(j - 1);
+                int v = prev[j - 1] + (c == d ? 0 : 1);
+                v = Math.min(v, Math.min(prev[j], curr[j - 1]) + 1);
+                if (i > 1 && j > 1 && c == rhs.charAt(j - 2) && lhs.charAt(i - 2) == d) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                curr[j] = Math.min(v, out);
+                min = Math.min(min, curr[j]);
+            }
+            if (hi < m) {
+                curr[hi + 1] = out;
+            }
+            if (min > max) {
+                return out;
+            }
+            int[] t = prev2;
+            prev2 = prev;
+            prev = curr;
+            curr = t;
+        }
+        return prev[m];
+    }
+
     public static int distance(CharSequence source, CharSequence target,
                                int deleteCost, int insertCost,
                                int replaceCost, int swapCost) {
@@ -197,6 +197,15 @@ public class NonBlocking {
             }
         }
 
+        @Override
+        public int available() {
+            try {
+                return chars.remaining() + input.available();
+            } catch (IOException e) {
+                return chars.remaining();
+            }
+        }
+
         @Override
         public void shutdown() {
             input.shutdown();
@@ -81,6 +81,12 @@ public class NonBlockingInputStreamImpl
         shutdown();
     }
 
+    @Override
+    public synchronized int available() throws IOException {
+        int a = in.available();
+        return b >= 0 ? a + 1 : a;
+    }
+
     /**
      * Attempts to read a byte from the input stream for a specific
      * period of time.
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal.Signal;
+
+/**
+ * A recorded terminal session.
+ *
+ * The binary format starts with a header containing the terminal type,
+ * the encoding and the initial size, followed by a sequence of events.
+ * Each event is made of a type byte, the number of nanoseconds elapsed
+ * since the previous event and the event payload.  Numbers are written
+ * as variable length integers, so that a keystroke usually costs a
+ * few bytes only.
+ *
+ * @see org.jline.terminal.impl.RecordingTerminal
+ * @see org.jline.terminal.impl.TerminalReplay
+ */
+public class TerminalRecording {
+
+    private static final int MAGIC = 0x4a4c5452; // JLTR
+    private static final int VERSION = 1;
+
+    public enum EventType {
+        Input,
+        Output,
+        Size,
+        Signal
+    }
+
+    public static class Event {
+
+        private final EventType type;
+        private final long time;
+        private final byte[] data;
+        private final Size size;
+        private final Signal signal;
+
+        Event(EventType type, long time, byte[] data, Size size, Signal signal) {
+            this.type = type;
+            this.time = time;
+            this.data = data;
+            this.size = size;
+            this.signal = signal;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * The event time in nanoseconds, relative to the start of the recording.
+         *
+         * @return the event time
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * The bytes for {@link EventType#Input} and {@link EventType#Output} events.
+         *
+         * @return the event data or <code>null</code>
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        public Size getSize() {
+            return size;
+        }
+
+        public Signal getSignal() {
+            return signal;
+        }
+
+        @Override
+        public String toString() {
+            return "Event[" +
+                    "type=" + type +
+                    ", time=" + time +
+                    (data != null ? ", length=" + data.length : "") +
+                    (size != null ? ", size=" + size : "") +
+                    (signal != null ? ", signal=" + signal : "") +
+                    ']';
+        }
+    }
+
+    private final String type;
+    private final Charset encoding;
+    private final Size size;
+    private final List<Event> events;
+
+    public TerminalRecording(String type, Charset encoding, Size size, List<Event> events) {
+        this.type = type;
+        this.encoding = encoding;
+        this.size = size;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Charset getEncoding() {
+        return encoding;
+    }
+
+    public Size getSize() {
+        return size;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * The duration of the recorded session in nanoseconds.
+     *
+     * @return the session duration
+     */
+    public long getDuration() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getTime();
+    }
+
+    public static TerminalRecording read(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a terminal recording");
+        }
+        int version = dis.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported terminal recording version: " + version);
+        }
+        String type = dis.readUTF();
+        Charset encoding = Charset.forName(dis.readUTF());
+        Size size = new Size((int) readVarLong(dis), (int) readVarLong(dis));
+        List<Event> events = new ArrayList<>();
+        EventType[] types = EventType.values();
+        Signal[] signals = Signal.values();
+        long time = 0;
+        while (true) {
+            int t = dis.read();
+            if (t < 0) {
+                break;
+            }
+            if (t >= types.length) {
+                throw new IOException("Invalid event type: " + t);
+            }
+            time += readVarLong(dis);
+            switch (types[t]) {
+                case Input:
+                case Output: {
+                    byte[] data = new byte[(int) readVarLong(dis)];
+                    dis.readFully(data);
+                    events.add(new Event(types[t], time, data, null, null));
+                    break;
+                }
+                case Size:
+                    events.add(new Event(types[t], time, null,
+                            new Size((int) readVarLong(dis), (int) readVarLong(dis)), null));
+                    break;
+                case Signal: {
+                    long s = readVarLong(dis);
+                    if (s < 0 || s >= signals.length) {
+                        throw new IOException("Invalid signal: " + s);
+                    }
+                    events.add(new Event(types[t], time, null, null, signals[(int) s]));
+                    break;
+                }
+            }
+        }
+        return new TerminalRecording(type.isEmpty() ? null : type, encoding, size, events);
+    }
+
+    private static long readVarLong(DataInputStream dis) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = dis.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes events to a recording.
+     * Events can be written concurrently from the input and output threads.
+     */
+    public static class Writer implements Closeable, Flushable {
+
+        private final DataOutputStream out;
+        private long last;
+
+        public Writer(OutputStream out, String type, Charset encoding, Size size) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeUTF(type != null ? type : "");
+            this.out.writeUTF(encoding.name());
+            writeVarLong(size.getColumns());
+            writeVarLong(size.getRows());
+            this.last = System.nanoTime();
+        }
+
+        public synchronized void input(byte[] data, int off, int len) throws IOException {
+            header(EventType.Input);
+            writeVarLong(len);
+            out.write(data, off, len);
+        }
+
+        public synchronized void output(byte[] data, int off, int len) throws IOException {
+            header(EventType.Output);
+            writeVarLong(len);
+            out.write(data, off, len);
+        }
+
+        public synchronized void size(Size size) throws IOException {
+            header(EventType.Size);
+            writeVarLong(size.getColumns());
+            writeVarLong(size.getRows());
+        }
+
+        public synchronized void signal(Signal signal) throws IOException {
+            header(EventType.Signal);
+            writeVarLong(signal.ordinal());
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+
+        private void header(EventType type) throws IOException {
+            long now = System.nanoTime();
+            out.writeByte(type.ordinal());
+            writeVarLong(Math.max(0, now - last));
+            last = now;
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                out.writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+}
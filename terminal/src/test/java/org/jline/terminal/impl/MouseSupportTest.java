@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.function.IntSupplier;
+
+import org.jline.terminal.MouseEvent;
+import org.jline.terminal.Terminal;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MouseSupportTest {
+
+    private static final MouseEvent NONE = new MouseEvent(MouseEvent.Type.Moved, MouseEvent.Button.NoButton,
+            EnumSet.noneOf(MouseEvent.Modifier.class), 0, 0);
+
+    @Test
+    public void testSgrDecoding() {
+        MouseEvent event = MouseSupport.readMouse(supplier("0;10;20M"), NONE, MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Pressed, event.getType());
+        assertEquals(MouseEvent.Button.Button1, event.getButton());
+        assertEquals(9, event.getX());
+        assertEquals(19, event.getY());
+
+        event = MouseSupport.readMouse(supplier("2;300;5m"), NONE, MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Released, event.getType());
+        assertEquals(MouseEvent.Button.Button3, event.getButton());
+        assertEquals(299, event.getX());
+
+        event = MouseSupport.readMouse(supplier("35;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Moved, event.getType());
+        assertEquals(MouseEvent.Button.NoButton, event.getButton());
+
+        event = MouseSupport.readMouse(supplier("48;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Dragged, event.getType());
+        assertEquals(EnumSet.of(MouseEvent.Modifier.Control), event.getModifiers());
+
+        event = MouseSupport.readMouse(supplier("65;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Wheel, event.getType());
+        assertEquals(MouseEvent.Button.WheelDown, event.getButton());
+    }
+
+    @Test
+    public void testCoalesceMotions() {
+        MouseEvent event = MouseSupport.readMouse(supplier("35;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        StringBuilder unread = new StringBuilder();
+        event = MouseSupport.coalesce(event,
+                lookahead("\033[<35;2;1M\033[<35;3;1M\033[<35;4;2Mabc"), unread::append);
+        assertEquals(MouseEvent.Type.Moved, event.getType());
+        assertEquals(3, event.getX());
+        assertEquals(1, event.getY());
+        assertEquals("a", unread.toString());
+    }
+
+    @Test
+    public void testCoalesceStopsAtOtherEvents() {
+        MouseEvent event = MouseSupport.readMouse(supplier("32;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        StringBuilder unread = new StringBuilder();
+        event = MouseSupport.coalesce(event,
+                lookahead("\033[<32;2;1M\033[<0;2;1m\033[<32;3;1M"), unread::append);
+        assertEquals(MouseEvent.Type.Dragged, event.getType());
+        assertEquals(1, event.getX());
+        assertEquals("\033[<0;2;1m", unread.toString());
+    }
+
+    @Test
+    public void testCoalesceIncompleteReport() {
+        MouseEvent event = MouseSupport.readMouse(supplier("35;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        StringBuilder unread = new StringBuilder();
+        event = MouseSupport.coalesce(event, lookahead("\033[<35;5"), unread::append);
+        assertEquals(0, event.getX());
+        assertEquals("\033[<35;5", unread.toString());
+    }
+
+    @Test
+    public void testNoCoalesceForPress() {
+        MouseEvent event = MouseSupport.readMouse(supplier("0;1;1M"), NONE, MouseSupport.SGR_PREFIX);
+        StringBuilder unread = new StringBuilder();
+        MouseEvent result = MouseSupport.coalesce(event, lookahead("\033[<35;2;1M"), unread::append);
+        assertEquals(event, result);
+        assertEquals("", unread.toString());
+    }
+
+    @Test
+    public void testSgrOptIn() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Terminal terminal = new ExternalTerminal("foo", "xterm",
+                new ByteArrayInputStream(new byte[0]), out, StandardCharsets.UTF_8);
+        terminal.trackMouse(Terminal.MouseTracking.Normal);
+        assertFalse(out.toString("UTF-8").contains("\033[?1006h"));
+        out.reset();
+        terminal.trackMouse(Terminal.MouseTracking.Normal, true);
+        assertTrue(out.toString("UTF-8").contains("\033[?1006h"));
+        terminal.close();
+    }
+
+    @Test
+    public void testReadMouseEventWithPrefix() throws IOException {
+        Terminal terminal = new ExternalTerminal("foo", "xterm",
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        MouseEvent event = terminal.readMouseEvent(supplier("0;10;20M"), MouseSupport.SGR_PREFIX);
+        assertEquals(MouseEvent.Type.Pressed, event.getType());
+        assertEquals(9, event.getX());
+        event = terminal.readMouseEvent(supplier("\"!!"), "\033[M");
+        assertEquals(MouseEvent.Type.Pressed, event.getType());
+        assertEquals(MouseEvent.Button.Button3, event.getButton());
+        assertEquals(0, event.getX());
+        terminal.close();
+    }
+
+    private static IntSupplier supplier(String s) {
+        int[] index = { 0 };
+        return () -> s.charAt(index[0]++);
+    }
+
+    private static IntSupplier lookahead(String s) {
+        int[] index = { 0 };
+        return () -> index[0] < s.length() ? s.charAt(index[0]++) : -1;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2002-2018, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.utils;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LevenshteinTest {
+
+    @Test
+    public void testBounded() {
+        assertEquals(0, Levenshtein.distance("foo", "foo", 0));
+        assertEquals(1, Levenshtein.distance("foo", "fo", 0));
+        assertEquals(1, Levenshtein.distance("foo", "ofo", 1));
+        assertEquals(2, Levenshtein.distance("kitten", "sitting", 1));
+        assertEquals(3, Levenshtein.distance("kitten", "sitting", 3));
+        assertEquals(3, Levenshtein.distance("", "abc", 5));
+        // the swapped characters can not be edited again
+        assertEquals(2, Levenshtein.distance("ca", "abc"));
+        assertEquals(3, Levenshtein.distance("ca", "abc", 5));
+    }
+
+    @Test
+    public void testBoundedRandom() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            String s1 = random(random);
+            String s2 = random(random);
+            int d = Levenshtein.distance(s1, s2);
+            int osa = osa(s1, s2);
+            for (int max = 0; max < 4; max++) {
+                int b = Levenshtein.distance(s1, s2, max);
+                assertEquals(s1 + " / " + s2, Math.min(osa, max + 1), b);
+                if (d <= 1) {
+                    assertEquals(s1 + " / " + s2, Math.min(d, max + 1), b);
+                }
+            }
+        }
+    }
+
+    private static int osa(String s1, String s2) {
+        int[][] t = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++) {
+            for (int j = 0; j <= s2.length(); j++) {
+                if (i == 0 || j == 0) {
+                    t[i][j] = i + j;
+                    continue;
+                }
+                t[i][j] = Math.min(t[i - 1][j - 1] + (s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1),
+                        Math.min(t[i - 1][j], t[i][j - 1]) + 1);
+                if (i > 1 && j > 1 && s1.charAt(i - 1) == s2.charAt(j - 2) && s1.charAt(i - 2) == s2.charAt(j - 1)) {
+                    t[i][j] = Math.min(t[i][j], t[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return t[s1.length()][s2.length()];
+    }
+
+    private static String random(Random random) {
+        char[] chars = new char[random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(chars);
+    }
+}